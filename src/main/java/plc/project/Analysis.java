@@ -0,0 +1,274 @@
+package plc.project;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * The results of running the {@link Analyzer} over an AST, kept apart from
+ * the AST itself. Entries are keyed by node identity, so the same parsed
+ * {@link Ast.Source} can be analysed any number of times (and on different
+ * threads) with each run producing its own table.
+ *
+ * An {@code Analysis} is immutable once the analyzer returns it. Passes
+ * that accept an optional analysis read through {@link #of(Analysis)}, so
+ * the same code serves ASTs the analyzer annotated.
+ */
+public final class Analysis {
+
+    private final Map<Ast, Environment.Type> types;
+    private final Map<Ast, Environment.Variable> variables;
+    private final Map<Ast, Environment.Function> functions;
+    private final Map<Ast, Environment.Address> addresses;
+    private final Map<Ast, List<Environment.Address>> parameterAddresses;
+    private final Map<String, Set<String>> dependencies;
+
+    private static final Analysis ANNOTATIONS = new Analysis();
+
+    /**
+     * The view over the AST annotations, which has no tables of its own.
+     */
+    private Analysis() {
+        this.types = null;
+        this.variables = null;
+        this.functions = null;
+        this.addresses = null;
+        this.parameterAddresses = null;
+        this.dependencies = Map.of();
+    }
+
+    private Analysis(Builder builder) {
+        this.types = Collections.unmodifiableMap(new IdentityHashMap<>(builder.types));
+        this.variables = Collections.unmodifiableMap(new IdentityHashMap<>(builder.variables));
+        this.functions = Collections.unmodifiableMap(new IdentityHashMap<>(builder.functions));
+        this.addresses = Collections.unmodifiableMap(new IdentityHashMap<>(builder.addresses));
+        this.parameterAddresses = Collections.unmodifiableMap(new IdentityHashMap<>(builder.parameterAddresses));
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        builder.dependencies.forEach((owner, set) -> dependencies.put(owner, Collections.unmodifiableSet(new HashSet<>(set))));
+        this.dependencies = Collections.unmodifiableMap(dependencies);
+    }
+
+    /**
+     * Returns {@code analysis}, or if it is {@code null} a view that reads
+     * the annotations the {@link Analyzer} left on the AST. The view records
+     * no dependencies.
+     */
+    public static Analysis of(Analysis analysis) {
+        return analysis != null ? analysis : ANNOTATIONS;
+    }
+
+    /**
+     * Returns the key naming a global in {@link #getDependencies(String)}.
+     */
+    public static String key(Ast.Global ast) {
+        return ast.getName();
+    }
+
+    /**
+     * Returns the key naming a function in {@link #getDependencies(String)},
+     * {@code name/arity} as in scope errors.
+     */
+    public static String key(Ast.Function ast) {
+        return ast.getName() + "/" + ast.getParameters().size();
+    }
+
+    /**
+     * Returns the type of an expression. As with {@link Ast.Expression#getType()},
+     * accesses and calls take their type from the resolved variable/function.
+     */
+    public Environment.Type getType(Ast.Expression ast) {
+        if (this == ANNOTATIONS) {
+            return ast.getType();
+        } else if (ast instanceof Ast.Expression.Access) {
+            return getVariable(ast).getType();
+        } else if (ast instanceof Ast.Expression.Function) {
+            return getFunction(ast).getReturnType();
+        }
+        return require(types, ast, "type");
+    }
+
+    /**
+     * Returns the variable of an {@link Ast.Global}, {@link
+     * Ast.Statement.Declaration} or {@link Ast.Expression.Access}.
+     */
+    public Environment.Variable getVariable(Ast ast) {
+        if (this != ANNOTATIONS) {
+            return require(variables, ast, "variable");
+        } else if (ast instanceof Ast.Global) {
+            return ((Ast.Global) ast).getVariable();
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            return ((Ast.Statement.Declaration) ast).getVariable();
+        }
+        return ((Ast.Expression.Access) ast).getVariable();
+    }
+
+    /**
+     * Returns the function of an {@link Ast.Function} or {@link
+     * Ast.Expression.Function}.
+     */
+    public Environment.Function getFunction(Ast ast) {
+        if (this != ANNOTATIONS) {
+            return require(functions, ast, "function");
+        } else if (ast instanceof Ast.Function) {
+            return ((Ast.Function) ast).getFunction();
+        }
+        return ((Ast.Expression.Function) ast).getFunction();
+    }
+
+    /**
+     * Returns the lexical address of an {@link Ast.Global}, {@link
+     * Ast.Statement.Declaration} or {@link Ast.Expression.Access}.
+     */
+    public Environment.Address getAddress(Ast ast) {
+        if (this != ANNOTATIONS) {
+            return require(addresses, ast, "address");
+        } else if (ast instanceof Ast.Global) {
+            return ((Ast.Global) ast).getAddress();
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            return ((Ast.Statement.Declaration) ast).getAddress();
+        }
+        return ((Ast.Expression.Access) ast).getAddress();
+    }
+
+    /**
+     * Returns the lexical addresses of the parameters of an {@link
+     * Ast.Function}, in declaration order.
+     */
+    public List<Environment.Address> getParameterAddresses(Ast.Function ast) {
+        if (this == ANNOTATIONS) {
+            return ast.getParameterAddresses();
+        }
+        return require(parameterAddresses, ast, "parameter addresses");
+    }
+
+    /**
+     * Returns the keys of the globals and functions referenced by the
+     * initializer of a global or the body of a function.
+     */
+    public Set<String> getDependencies(String declaration) {
+        return dependencies.getOrDefault(declaration, Set.of());
+    }
+
+    /**
+     * Returns the keys of every declaration with recorded dependencies.
+     */
+    public Set<String> getDeclarations() {
+        return dependencies.keySet();
+    }
+
+    private static <T> T require(Map<Ast, T> map, Ast ast, String name) {
+        T value = map.get(ast);
+        if (value == null) {
+            throw new IllegalStateException(name + " is uninitialized");
+        }
+        return value;
+    }
+
+    /**
+     * Collects results while the analyzer runs.
+     */
+    static final class Builder {
+
+        private final Map<Ast, Environment.Type> types = new IdentityHashMap<>();
+        private final Map<Ast, Environment.Variable> variables = new IdentityHashMap<>();
+        private final Map<Ast, Environment.Function> functions = new IdentityHashMap<>();
+        private final Map<Ast, Environment.Address> addresses = new IdentityHashMap<>();
+        private final Map<Ast, List<Environment.Address>> parameterAddresses = new IdentityHashMap<>();
+        private final Map<String, Set<String>> dependencies = new HashMap<>();
+
+        void setType(Ast.Expression ast, Environment.Type type) {
+            types.put(ast, type);
+        }
+
+        Environment.Type getType(Ast.Expression ast) {
+            if (ast instanceof Ast.Expression.Access) {
+                return getVariable(ast).getType();
+            } else if (ast instanceof Ast.Expression.Function) {
+                return getFunction(ast).getReturnType();
+            }
+            return require(types, ast, "type");
+        }
+
+        void setVariable(Ast ast, Environment.Variable variable) {
+            variables.put(ast, variable);
+        }
+
+        Environment.Variable getVariable(Ast ast) {
+            return require(variables, ast, "variable");
+        }
+
+        void setFunction(Ast ast, Environment.Function function) {
+            functions.put(ast, function);
+        }
+
+        Environment.Function getFunction(Ast ast) {
+            return require(functions, ast, "function");
+        }
+
+        void setAddress(Ast ast, Environment.Address address) {
+            addresses.put(ast, address);
+        }
+
+        void setParameterAddresses(Ast.Function ast, List<Environment.Address> addresses) {
+            parameterAddresses.put(ast, List.copyOf(addresses));
+        }
+
+        void addDependency(String owner, String declaration) {
+            dependencies.computeIfAbsent(owner, k -> new HashSet<>()).add(declaration);
+        }
+
+        void clearDependencies(String owner) {
+            dependencies.put(owner, new HashSet<>());
+        }
+
+        void putAll(Builder other) {
+            types.putAll(other.types);
+            variables.putAll(other.variables);
+            functions.putAll(other.functions);
+            addresses.putAll(other.addresses);
+            parameterAddresses.putAll(other.parameterAddresses);
+            other.dependencies.forEach((owner, set) -> dependencies.put(owner, new HashSet<>(set)));
+        }
+
+        /**
+         * Copies the results recorded for one node in {@code previous}.
+         * Global variables and functions are passed through the given
+         * functions, which return their counterparts in this run.
+         */
+        void copy(Analysis previous, Ast ast, UnaryOperator<Environment.Variable> global, UnaryOperator<Environment.Function> function) {
+            Environment.Type type = previous.types.get(ast);
+            if (type != null) {
+                types.put(ast, type);
+            }
+            Environment.Address address = previous.addresses.get(ast);
+            if (address != null) {
+                addresses.put(ast, address);
+            }
+            Environment.Variable variable = previous.variables.get(ast);
+            if (variable != null) {
+                variables.put(ast, address != null && address.isGlobal() ? global.apply(variable) : variable);
+            }
+            if (previous.functions.containsKey(ast)) {
+                functions.put(ast, function.apply(previous.functions.get(ast)));
+            }
+            if (previous.parameterAddresses.containsKey(ast)) {
+                parameterAddresses.put(ast, previous.parameterAddresses.get(ast));
+            }
+        }
+
+        void copyDependencies(Analysis previous, String owner) {
+            dependencies.put(owner, new HashSet<>(previous.getDependencies(owner)));
+        }
+
+        Analysis build() {
+            return new Analysis(this);
+        }
+
+    }
+
+}
@@ -3,6 +3,8 @@ package plc.project;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 /**
@@ -12,17 +14,58 @@ import java.util.stream.Collectors;
 public final class Analyzer implements Ast.Visitor<Void> {
 
     public Scope scope;
+    private final Scope globals;
     private Ast.Function function;
+    private String owner;
+    private final Environment.TypeRegistry types;
+    private final boolean annotate;
+    private final Analysis.Builder analysis = new Analysis.Builder();
 
     public Analyzer(Scope parent) {
+        this(parent, true);
+    }
+
+    /**
+     * If {@code annotate} is {@code false} the AST is left untouched and the
+     * results are only available from {@link #getAnalysis()}, which allows
+     * the same AST to be analysed by several analyzers at once.
+     */
+    public Analyzer(Scope parent, boolean annotate) {
+        this(parent, Environment.getDefaultRegistry(), annotate);
+    }
+
+    /**
+     * Resolves type names through {@code types} instead of the shared default
+     * registry, so each compilation can register its own types.
+     */
+    public Analyzer(Scope parent, Environment.TypeRegistry types, boolean annotate) {
+        this.types = types;
+        this.annotate = annotate;
         scope = new Scope(parent);
-        scope.defineFunction("print", "System.out.println", List.of(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL);
+        globals = scope;
+        scope.defineFunction("print", "System.out.println", List.of(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL)
+                .setEffects(EnumSet.of(Environment.Effect.IO));
+    }
+
+    /**
+     * Creates a worker for {@link #visitParallel(Ast.Source, ForkJoinPool)}
+     * that shares the global scope of {@code parent}.
+     */
+    private Analyzer(Analyzer parent) {
+        this.types = parent.types;
+        this.annotate = parent.annotate;
+        this.scope = parent.globals;
+        this.globals = parent.globals;
     }
 
     public Scope getScope() {
         return scope;
     }
 
+    public Analysis getAnalysis() {
+        return analysis.build();
+    }
+
     @Override
     public Void visit(Ast.Source ast) {
         for (Ast.Global global : ast.getGlobals()) {
@@ -37,58 +80,206 @@ public final class Analyzer implements Ast.Visitor<Void> {
         throw new RuntimeException("Main method must return integer");
     }
 
+    /**
+     * Analyses a source in two phases. First every global and every function
+     * signature is defined in order, then the function bodies are checked
+     * concurrently on {@code pool}, each by its own analyzer with a child
+     * scope of the shared (by then read-only) global scope. Unlike {@link
+     * #visit(Ast.Source)}, a body may call functions defined after it.
+     *
+     * Results are merged in source order. If any body fails, the error of
+     * the first failing function is thrown, with the others suppressed.
+     */
+    public Void visitParallel(Ast.Source ast, ForkJoinPool pool) {
+        for (Ast.Global global : ast.getGlobals()) {
+            visit(global);
+        }
+        for (Ast.Function function : ast.getFunctions()) {
+            declare(function);
+        }
+        List<Analyzer> workers = new ArrayList<>();
+        List<ForkJoinTask<RuntimeException>> tasks = new ArrayList<>();
+        for (Ast.Function function : ast.getFunctions()) {
+            Analyzer worker = new Analyzer(this);
+            workers.add(worker);
+            tasks.add(pool.submit(() -> {
+                try {
+                    worker.check(function);
+                    return null;
+                } catch (RuntimeException e) {
+                    return e;
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        for (int i = 0; i < tasks.size(); i++) {
+            RuntimeException e = tasks.get(i).join();
+            if (e == null) {
+                analysis.putAll(workers.get(i).analysis);
+            } else if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (scope.lookupFunction("main", 0).getReturnType().equals(Environment.Type.INTEGER)) {
+            return null;
+        }
+        throw new RuntimeException("Main method must return integer");
+    }
+
+    /**
+     * Analyses a source, only checking the initializers and bodies of the
+     * declarations in {@code dirty}; results for the others are taken from
+     * {@code previous}, if any. Every global and function signature is still
+     * defined, and as with {@link #visitParallel(Ast.Source, ForkJoinPool)}
+     * all signatures are defined before any body is checked.
+     *
+     * Only the results of the clean declarations of {@code ast} are copied,
+     * and their references to globals and functions are re-bound to the
+     * ones defined by this run, so every declaration has a single {@link
+     * Environment.Variable} or {@link Environment.Function} in the result.
+     */
+    Void visitIncremental(Ast.Source ast, Analysis previous, Set<Ast> dirty) {
+        for (Ast.Global global : ast.getGlobals()) {
+            if (dirty.contains(global))
+                visit(global);
+            else
+                define(global);
+        }
+        for (Ast.Function function : ast.getFunctions()) {
+            declare(function);
+        }
+        if (previous != null) {
+            for (Ast.Global global : ast.getGlobals()) {
+                if (!dirty.contains(global))
+                    reuse(global, Analysis.key(global), previous);
+            }
+            for (Ast.Function function : ast.getFunctions()) {
+                if (!dirty.contains(function))
+                    reuse(function, Analysis.key(function), previous);
+            }
+        }
+        for (Ast.Function function : ast.getFunctions()) {
+            if (dirty.contains(function))
+                check(function);
+        }
+        if (scope.lookupFunction("main", 0).getReturnType().equals(Environment.Type.INTEGER)) {
+            return null;
+        }
+        throw new RuntimeException("Main method must return integer");
+    }
+
+    /**
+     * Copies the results of a clean declaration from a previous run.
+     */
+    private void reuse(Ast declaration, String key, Analysis previous) {
+        analysis.copyDependencies(previous, key);
+        new AstRewriter() {
+
+            @Override
+            public Ast visit(Ast ast) {
+                analysis.copy(previous, ast,
+                        variable -> globals.lookupVariable(variable.getName()),
+                        function -> globals.lookupFunction(function.getName(), function.getParameterTypes().size()));
+                return super.visit(ast);
+            }
+
+        }.visit(declaration);
+    }
+
     @Override
     public Void visit(Ast.Global ast) {
         Optional<Ast.Expression> value = ast.getValue();
         if (value.isPresent()){
             if (value.get() instanceof Ast.Expression.PlcList) {
-                ((Ast.Expression.PlcList) value.get()).setType(Environment.getType(ast.getTypeName()));
+                setType(value.get(), types.getType(ast.getTypeName()));
             }
-            visit(value.get());
-            requireAssignable(Environment.getType(ast.getTypeName()), value.get().getType());
+            owner = Analysis.key(ast);
+            analysis.clearDependencies(owner);
+            try {
+                visit(value.get());
+            } finally {
+                owner = null;
+            }
+            requireAssignable(types, types.getType(ast.getTypeName()), typeOf(value.get()));
         }
+        define(ast);
+        return null;
+    }
+
+    /**
+     * Defines a global without checking its initializer.
+     */
+    private void define(Ast.Global ast) {
         Environment.Variable variable = scope.defineVariable(ast.getName(),
                         ast.getName(),
-                        Environment.getType(ast.getTypeName()),
+                        types.getType(ast.getTypeName()),
                         ast.getMutable(),
                         Environment.NIL);
-        ast.setVariable(variable);
-        return null;
+        setVariable(ast, variable);
+        setAddress(ast, resolve(ast.getName()));
     }
 
     @Override
     public Void visit(Ast.Function ast) {
+        declare(ast);
+        check(ast);
+        return null;
+    }
+
+    /**
+     * Defines the signature of a function in the current scope.
+     */
+    private void declare(Ast.Function ast) {
         List<Environment.Type> argsTypes = new ArrayList<>();
         for (String string : ast.getParameterTypeNames())
-            argsTypes.add(Environment.getType(string));
+            argsTypes.add(types.getType(string));
 
         Optional<String> returnType = ast.getReturnTypeName();
         Environment.Function func = null;
         func = returnType.map(s -> scope.defineFunction(ast.getName(),
                 ast.getName(),
                 argsTypes,
-                Environment.getType(s),
+                types.getType(s),
                 args -> Environment.NIL)).orElseGet(() -> scope.defineFunction(ast.getName(),
                 ast.getName(),
                 argsTypes,
-                Environment.getType("Nil"),
+                types.getType("Nil"),
                 args -> Environment.NIL));
 
-        ast.setFunction(func);
+        setFunction(ast, func);
+    }
+
+    /**
+     * Checks the body of a function whose signature has been declared.
+     */
+    private void check(Ast.Function ast) {
         scope = new Scope(scope);
-        for (int i = 0; i < argsTypes.size(); i++) {
+        List<Environment.Address> addresses = new ArrayList<>();
+        for (int i = 0; i < ast.getParameters().size(); i++) {
             scope.defineVariable(ast.getParameters().get(i),
                     ast.getParameters().get(i),
-                    Environment.getType(ast.getParameterTypeNames().get(i)),
+                    types.getType(ast.getParameterTypeNames().get(i)),
                     true,
                     Environment.NIL);
+            addresses.add(new Environment.Address(0, scope.getSlot(ast.getParameters().get(i))));
         }
+        setParameterAddresses(ast, addresses);
         function = ast;
-        for (Ast.Statement statement: ast.getStatements())
-            visit(statement);
-        function = null;
-        scope = scope.getParent();
-        return null;
+        owner = Analysis.key(ast);
+        analysis.clearDependencies(owner);
+        try {
+            for (Ast.Statement statement: ast.getStatements())
+                visit(statement);
+        } finally {
+            function = null;
+            owner = null;
+            scope = scope.getParent();
+        }
     }
 
     @Override
@@ -104,19 +295,20 @@ public final class Analyzer implements Ast.Visitor<Void> {
     public Void visit(Ast.Statement.Declaration ast) {
         Environment.Type type = null;
         if (ast.getTypeName().isPresent()){
-            type = Environment.getType(ast.getTypeName().get());
+            type = types.getType(ast.getTypeName().get());
             if (ast.getValue().isPresent()){
                 visit(ast.getValue().get());
-                requireAssignable(type, ast.getValue().get().getType());
+                requireAssignable(types, type, typeOf(ast.getValue().get()));
             }
         } else {
             if (ast.getValue().isEmpty())
                 throw new RuntimeException("Variable Value missing");
             visit(ast.getValue().get());
-            type = ast.getValue().get().getType();
+            type = typeOf(ast.getValue().get());
         }
         Environment.Variable variable = scope.defineVariable(ast.getName(), ast.getName(), type, true, Environment.NIL);
-        ast.setVariable(variable);
+        setVariable(ast, variable);
+        setAddress(ast, resolve(ast.getName()));
         return null;
     }
 
@@ -125,7 +317,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
         if (ast.getReceiver()instanceof Ast.Expression.Access){
             visit(ast.getReceiver());
             visit(ast.getValue());
-            requireAssignable(ast.getReceiver().getType(), ast.getValue().getType());
+            requireAssignable(types, typeOf(ast.getReceiver()), typeOf(ast.getValue()));
             return null;
         }
         throw new RuntimeException("Not able to assign");
@@ -134,7 +326,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Statement.If ast) {
         visit(ast.getCondition());
-        if (!ast.getCondition().getType().equals(Environment.Type.BOOLEAN)) {
+        if (!typeOf(ast.getCondition()).equals(Environment.Type.BOOLEAN)) {
             throw new RuntimeException("Condition not a boolean.");
         }
         if (ast.getThenStatements().isEmpty()) {
@@ -162,7 +354,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
                     throw new RuntimeException("Default case cannot have condition");
                 }
                 visit(cases.get(i).getValue().get());
-                if (cases.get(i).getValue().get().getType().equals(ast.getCondition().getType())) {
+                if (typeOf(cases.get(i).getValue().get()).equals(typeOf(ast.getCondition()))) {
 
                 } else {
                     throw new RuntimeException("Condition and case type must match in a switch statement.");
@@ -185,7 +377,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Statement.While ast) {
         visit(ast.getCondition());
-        if (!ast.getCondition().getType().equals(Environment.Type.BOOLEAN))
+        if (!typeOf(ast.getCondition()).equals(Environment.Type.BOOLEAN))
             throw new RuntimeException("Invalid condition in WHILE statement.");
 
         scope = new Scope(scope);
@@ -198,25 +390,25 @@ public final class Analyzer implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Statement.Return ast) {
         visit(ast.getValue());
-        Environment.Type ret = Environment.getType(function.getReturnTypeName().orElse("Nil"));
-        requireAssignable(ret, ast.getValue().getType());
+        Environment.Type ret = types.getType(function.getReturnTypeName().orElse("Nil"));
+        requireAssignable(types, ret, typeOf(ast.getValue()));
         return null;
     }
 
     @Override
     public Void visit(Ast.Expression.Literal ast) {
         if (ast.getLiteral() instanceof Boolean) {
-            ast.setType(Environment.Type.BOOLEAN);
+            setType(ast, Environment.Type.BOOLEAN);
         }
         else if (ast.getLiteral() instanceof Character) {
-            ast.setType(Environment.Type.CHARACTER);
+            setType(ast, Environment.Type.CHARACTER);
         }
         else if (ast.getLiteral() instanceof String) {
-            ast.setType(Environment.Type.STRING);
+            setType(ast, Environment.Type.STRING);
         }
         else if (ast.getLiteral() instanceof BigInteger integer) {
             if (integer.toByteArray().length <= 4){
-                ast.setType(Environment.Type.INTEGER);
+                setType(ast, Environment.Type.INTEGER);
             }else{
                 throw new RuntimeException("Too big integer");
             }
@@ -224,10 +416,10 @@ public final class Analyzer implements Ast.Visitor<Void> {
             if ((decimal.doubleValue() > Double.MAX_VALUE) || (decimal.doubleValue() < Double.MIN_VALUE)) {
                 throw new RuntimeException("Too big decimal");
             } else {
-                ast.setType(Environment.Type.DECIMAL);
+                setType(ast, Environment.Type.DECIMAL);
             }
         } else {
-            ast.setType(Environment.Type.NIL);
+            setType(ast, Environment.Type.NIL);
         }
         return null;
     }
@@ -238,7 +430,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
             throw new RuntimeException("The grouped expression is not binary.");
 
         visit(ast.getExpression());
-        ast.setType(ast.getExpression().getType());
+        setType(ast, typeOf(ast.getExpression()));
         return null;
     }
 
@@ -249,51 +441,51 @@ public final class Analyzer implements Ast.Visitor<Void> {
         visit(left);
         visit(right);
         if (op.equals("&&") || op.equals("||")){
-            if (left.getType().equals(Environment.Type.BOOLEAN) &&
-                    right.getType().equals(Environment.Type.BOOLEAN)) {
-                ast.setType(Environment.Type.BOOLEAN);
+            if (typeOf(left).equals(Environment.Type.BOOLEAN) &&
+                    typeOf(right).equals(Environment.Type.BOOLEAN)) {
+                setType(ast, Environment.Type.BOOLEAN);
             } else {
                 throw new RuntimeException("Left or Right not a boolean");
             }
         } else if (op.equals("<") || op.equals(">") || op.equals("==") || op.equals("!=")) {
-            requireAssignable(Environment.Type.COMPARABLE, left.getType());
-            requireAssignable(Environment.Type.COMPARABLE, right.getType());
-            if (left.getType().equals(right.getType()))
-                ast.setType(Environment.Type.BOOLEAN);
+            requireAssignable(types, Environment.Type.COMPARABLE, typeOf(left));
+            requireAssignable(types, Environment.Type.COMPARABLE, typeOf(right));
+            if (typeOf(left).equals(typeOf(right)))
+                setType(ast, Environment.Type.BOOLEAN);
             else
                 throw new RuntimeException("Left or Right types don't match");
         } else if (op.equals("+")) {
-            if (left.getType().equals(Environment.Type.STRING)
-                    || right.getType().equals(Environment.Type.STRING)){
-                ast.setType(Environment.Type.STRING);
+            if (typeOf(left).equals(Environment.Type.STRING)
+                    || typeOf(right).equals(Environment.Type.STRING)){
+                setType(ast, Environment.Type.STRING);
             }
-            else if (left.getType().equals(Environment.Type.INTEGER)
-                    && left.getType().equals(right.getType())){
-                ast.setType(Environment.Type.INTEGER);
+            else if (typeOf(left).equals(Environment.Type.INTEGER)
+                    && typeOf(left).equals(typeOf(right))){
+                setType(ast, Environment.Type.INTEGER);
             }
-            else if (left.getType().equals(Environment.Type.DECIMAL)
-                    && left.getType().equals(right.getType())){
-                ast.setType(Environment.Type.DECIMAL);
+            else if (typeOf(left).equals(Environment.Type.DECIMAL)
+                    && typeOf(left).equals(typeOf(right))){
+                setType(ast, Environment.Type.DECIMAL);
             }
             else {
                 throw new RuntimeException("+ is supported for those types");
             }
         } else if (op.equals("-") || op.equals("/") || op.equals("*")) {
-            if (left.getType().equals(Environment.Type.INTEGER)
-                    && left.getType().equals(right.getType())){
-                ast.setType(Environment.Type.INTEGER);
+            if (typeOf(left).equals(Environment.Type.INTEGER)
+                    && typeOf(left).equals(typeOf(right))){
+                setType(ast, Environment.Type.INTEGER);
             }
-            else if (left.getType().equals(Environment.Type.DECIMAL)
-                    && left.getType().equals(right.getType())){
-                ast.setType(Environment.Type.DECIMAL);
+            else if (typeOf(left).equals(Environment.Type.DECIMAL)
+                    && typeOf(left).equals(typeOf(right))){
+                setType(ast, Environment.Type.DECIMAL);
             }
             else {
                 throw new RuntimeException("+ is supported for those types");
             }
         } else if (op.equals("^")) {
-            if (left.getType().equals(Environment.Type.INTEGER)
-                    && left.getType().equals(right.getType())){
-                ast.setType(Environment.Type.INTEGER);
+            if (typeOf(left).equals(Environment.Type.INTEGER)
+                    && typeOf(left).equals(typeOf(right))){
+                setType(ast, Environment.Type.INTEGER);
             } else {
                 throw new RuntimeException("+ is supported for those types");
             }
@@ -306,25 +498,30 @@ public final class Analyzer implements Ast.Visitor<Void> {
         if (ast.getOffset().isPresent()){
             Ast.Expression offset = ast.getOffset().get();
             visit(offset);
-            if (!(offset.getType().equals(Environment.Type.INTEGER))){
+            if (!(typeOf(offset).equals(Environment.Type.INTEGER))){
                 throw new RuntimeException("Offset must be an integer");
             }
         }
-        ast.setVariable(scope.lookupVariable(ast.getName()));
+        setVariable(ast, scope.lookupVariable(ast.getName()));
+        Environment.Address address = resolve(ast.getName());
+        setAddress(ast, address);
+        if (address.isGlobal())
+            depend(ast.getName());
         return null;
     }
 
     @Override
     public Void visit(Ast.Expression.Function ast) {
-        ast.setFunction(scope.lookupFunction(ast.getName(), ast.getArguments().size()));
+        setFunction(ast, scope.lookupFunction(ast.getName(), ast.getArguments().size()));
+        depend(ast.getName() + "/" + ast.getArguments().size());
         List<Ast.Expression> args = ast.getArguments();
-        List<Environment.Type> types = ast.getFunction().getParameterTypes();
+        List<Environment.Type> types = analysis.getFunction(ast).getParameterTypes();
         for (int i = 0; i < args.size(); i++) {
             Ast.Expression arg = args.get(i);
             Environment.Type param = types.get(i);
 
             visit(arg);
-            requireAssignable(param, arg.getType());
+            requireAssignable(this.types, param, typeOf(arg));
         }
         return null;
     }
@@ -334,22 +531,115 @@ public final class Analyzer implements Ast.Visitor<Void> {
         List<Ast.Expression> list = ast.getValues();
         list.forEach(expr -> {
             visit(expr);
-            requireAssignable(ast.getType(), expr.getType());
+            requireAssignable(types, typeOf(ast), typeOf(expr));
         });
         return null;
     }
 
-    public static void requireAssignable(Environment.Type target, Environment.Type type) {
-        if (target.equals(type) || target.equals(Environment.Type.ANY))
+    /**
+     * Resolves a name to the lexical address of its definition, counting the
+     * block scopes created by this analyzer. Variables in the top-level
+     * scope get global slots.
+     */
+    private Environment.Address resolve(String name) {
+        int depth = 0;
+        for (Scope current = scope; current != null; current = current.getParent(), depth++) {
+            int slot = current.getSlot(name);
+            if (slot >= 0) {
+                return current == globals ? Environment.Address.global(slot) : new Environment.Address(depth, slot);
+            }
+        }
+        throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+    }
+
+    /**
+     * Records that the global or function being analysed references the
+     * given top-level declaration.
+     */
+    private void depend(String declaration) {
+        if (owner != null) {
+            analysis.addDependency(owner, declaration);
+        }
+    }
+
+    private Environment.Type typeOf(Ast.Expression ast) {
+        return analysis.getType(ast);
+    }
+
+    private void setType(Ast.Expression ast, Environment.Type type) {
+        analysis.setType(ast, type);
+        if (!annotate) {
+            return;
+        }
+        if (ast instanceof Ast.Expression.Literal) {
+            ((Ast.Expression.Literal) ast).setType(type);
+        } else if (ast instanceof Ast.Expression.Group) {
+            ((Ast.Expression.Group) ast).setType(type);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            ((Ast.Expression.Binary) ast).setType(type);
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            ((Ast.Expression.PlcList) ast).setType(type);
+        }
+    }
+
+    private void setVariable(Ast ast, Environment.Variable variable) {
+        analysis.setVariable(ast, variable);
+        if (!annotate) {
+            return;
+        }
+        if (ast instanceof Ast.Global) {
+            ((Ast.Global) ast).setVariable(variable);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            ((Ast.Statement.Declaration) ast).setVariable(variable);
+        } else if (ast instanceof Ast.Expression.Access) {
+            ((Ast.Expression.Access) ast).setVariable(variable);
+        }
+    }
+
+    private void setFunction(Ast ast, Environment.Function function) {
+        analysis.setFunction(ast, function);
+        if (!annotate) {
+            return;
+        }
+        if (ast instanceof Ast.Function) {
+            ((Ast.Function) ast).setFunction(function);
+        } else if (ast instanceof Ast.Expression.Function) {
+            ((Ast.Expression.Function) ast).setFunction(function);
+        }
+    }
+
+    private void setParameterAddresses(Ast.Function ast, List<Environment.Address> addresses) {
+        analysis.setParameterAddresses(ast, addresses);
+        if (!annotate) {
+            return;
+        }
+        ast.setParameterAddresses(addresses);
+    }
+
+    private void setAddress(Ast ast, Environment.Address address) {
+        analysis.setAddress(ast, address);
+        if (!annotate) {
             return;
-        if (target.equals(Environment.Type.COMPARABLE)
-                && (type.getName().equals("Integer")
-                || type.getName().equals("Decimal")
-                || type.getName().equals("Character")
-                || type.getName().equals("String"))) {
-                return;
-        }
-        throw new RuntimeException("Types don't match");
+        }
+        if (ast instanceof Ast.Global) {
+            ((Ast.Global) ast).setAddress(address);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            ((Ast.Statement.Declaration) ast).setAddress(address);
+        } else if (ast instanceof Ast.Expression.Access) {
+            ((Ast.Expression.Access) ast).setAddress(address);
+        }
+    }
+
+    public static void requireAssignable(Environment.Type target, Environment.Type type) {
+        if (!Environment.Type.isAssignable(target, type)) {
+            throw new RuntimeException("Types don't match");
+        }
+    }
+
+    private static void requireAssignable(Environment.TypeRegistry types, Environment.Type target, Environment.Type type) {
+        if (!types.isAssignable(target, type)) {
+            throw new RuntimeException("Types don't match");
+        }
     }
 
 }
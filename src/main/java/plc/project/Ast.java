@@ -11,6 +11,12 @@ import java.util.Optional;
  */
 public abstract class Ast {
 
+    /**
+     * Calls the {@link Visitor} method for this node's class. This is a single
+     * virtual call, unlike an {@code instanceof} chain over every node type.
+     */
+    public abstract <T> T accept(Visitor<T> visitor);
+
     public static final class Source extends Ast {
 
         private final List<Global> globals;
@@ -29,6 +35,11 @@ public abstract class Ast {
             return functions;
         }
 
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Source &&
@@ -53,6 +64,7 @@ public abstract class Ast {
         private final boolean mutable;
         private final Optional<Ast.Expression> value;
         private Environment.Variable variable = null;
+        private Environment.Address address = null;
 
         public Global(String name, boolean mutable, Optional<Expression> value) {
             this(name, "Any", mutable, value);
@@ -93,6 +105,22 @@ public abstract class Ast {
             this.variable = variable;
         }
 
+        public Environment.Address getAddress() {
+            if (address == null) {
+                throw new IllegalStateException("address is uninitialized");
+            }
+            return address;
+        }
+
+        public void setAddress(Environment.Address address) {
+            this.address = address;
+        }
+
+
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
 
         @Override
         public boolean equals(Object obj) {
@@ -125,7 +153,8 @@ public abstract class Ast {
         private final Optional<String> returnTypeName;
         private final List<Statement> statements;
         private Environment.Function function = null;
-        
+        private List<Environment.Address> parameterAddresses = null;
+
         public Function(String name, List<String> parameters, List<Statement> statements) {
             this(name, parameters, new ArrayList<>(), Optional.of("Any"), statements);
             for (int i = 0; i < parameters.size(); i++) {
@@ -173,6 +202,22 @@ public abstract class Ast {
             this.function = function;
         }
 
+        public List<Environment.Address> getParameterAddresses() {
+            if (parameterAddresses == null) {
+                throw new IllegalStateException("parameter addresses are uninitialized");
+            }
+            return parameterAddresses;
+        }
+
+        public void setParameterAddresses(List<Environment.Address> parameterAddresses) {
+            this.parameterAddresses = parameterAddresses;
+        }
+
+
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
 
         @Override
         public boolean equals(Object obj) {
@@ -214,6 +259,11 @@ public abstract class Ast {
                 return expression;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Ast.Statement.Expression &&
@@ -235,6 +285,7 @@ public abstract class Ast {
             private final Optional<String> typeName;
             private Optional<Ast.Expression> value;
             private Environment.Variable variable = null;
+            private Environment.Address address = null;
 
             public Declaration(String name, Optional<Ast.Expression> value) {
                 this(name, Optional.empty(), value);
@@ -268,8 +319,24 @@ public abstract class Ast {
             public void setVariable(Environment.Variable variable) {
                 this.variable = variable;
             }
+
+            public Environment.Address getAddress() {
+                if (address == null) {
+                    throw new IllegalStateException("address is uninitialized");
+                }
+                return address;
+            }
+
+            public void setAddress(Environment.Address address) {
+                this.address = address;
+            }
             
             
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Declaration &&
@@ -309,6 +376,11 @@ public abstract class Ast {
                 return value;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Assignment &&
@@ -351,6 +423,11 @@ public abstract class Ast {
                 return elseStatements;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof If &&
@@ -386,6 +463,11 @@ public abstract class Ast {
 
             public List<Ast.Statement.Case> getCases() { return cases; }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Switch &&
@@ -421,6 +503,11 @@ public abstract class Ast {
                 return statements;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Case &&
@@ -456,6 +543,11 @@ public abstract class Ast {
                 return statements;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof While &&
@@ -485,6 +577,11 @@ public abstract class Ast {
                 return value;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Return &&
@@ -533,6 +630,11 @@ public abstract class Ast {
 
 
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Literal &&
@@ -576,6 +678,11 @@ public abstract class Ast {
             }
 
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Group &&
@@ -631,6 +738,11 @@ public abstract class Ast {
                 this.type = type;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Binary &&
@@ -658,6 +770,7 @@ public abstract class Ast {
             private final Optional<Ast.Expression> offset;
             private final String name;
             private Environment.Variable variable = null;
+            private Environment.Address address = null;
 
             public Access(Optional<Ast.Expression> offset, String name) {
                 this.offset = offset;
@@ -683,11 +796,27 @@ public abstract class Ast {
                 this.variable = variable;
             }
 
+            public Environment.Address getAddress() {
+                if (address == null) {
+                    throw new IllegalStateException("address is uninitialized");
+                }
+                return address;
+            }
+
+            public void setAddress(Environment.Address address) {
+                this.address = address;
+            }
+
             @Override
             public Environment.Type getType() {
                 return getVariable().getType();
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Access &&
@@ -743,6 +872,11 @@ public abstract class Ast {
                 return getFunction().getReturnType();
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Ast.Expression.Function &&
@@ -788,6 +922,11 @@ public abstract class Ast {
                 this.type = type;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Ast.Expression.PlcList &&
@@ -810,43 +949,7 @@ public abstract class Ast {
     public interface Visitor<T> {
 
         default T visit(Ast ast) {
-            if (ast instanceof Ast.Source) {
-                return visit((Ast.Source) ast);
-            } else if (ast instanceof Ast.Global) {
-                return visit((Ast.Global) ast);
-            } else if (ast instanceof Ast.Function) {
-                return visit((Ast.Function) ast);
-            } else if (ast instanceof Ast.Statement.Expression) {
-                return visit((Ast.Statement.Expression) ast);
-            } else if (ast instanceof Ast.Statement.Declaration) {
-                return visit((Ast.Statement.Declaration) ast);
-            } else if (ast instanceof Ast.Statement.Assignment) {
-                return visit((Ast.Statement.Assignment) ast);
-            } else if (ast instanceof Ast.Statement.If) {
-                return visit((Ast.Statement.If) ast);
-            } else if (ast instanceof Ast.Statement.Switch) {
-                return visit((Ast.Statement.Switch) ast);
-            } else if (ast instanceof Ast.Statement.Case) {
-                return visit((Ast.Statement.Case) ast);
-            } else if (ast instanceof Ast.Statement.While) {
-                return visit((Ast.Statement.While) ast);
-            } else if (ast instanceof Ast.Statement.Return) {
-                return visit((Ast.Statement.Return) ast);
-            } else if (ast instanceof Ast.Expression.Literal) {
-                return visit((Ast.Expression.Literal) ast);
-            } else if (ast instanceof Ast.Expression.Group) {
-                return visit((Ast.Expression.Group) ast);
-            } else if (ast instanceof Ast.Expression.Binary) {
-                return visit((Ast.Expression.Binary) ast);
-            } else if (ast instanceof Ast.Expression.Access) {
-                return visit((Ast.Expression.Access) ast);
-            } else if (ast instanceof Ast.Expression.Function) {
-                return visit((Ast.Expression.Function) ast);
-            } else if (ast instanceof Ast.Expression.PlcList) {
-                return visit((Ast.Expression.PlcList) ast);
-            } else {
-                throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
-            }
+            return ast.accept(this);
         }
 
         T visit(Ast.Source ast);
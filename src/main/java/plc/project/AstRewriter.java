@@ -0,0 +1,207 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Base class for passes that transform an AST. Each visit method returns the
+ * rewritten node; by default children are rewritten and the node is rebuilt
+ * only if one of them changed, so untouched subtrees keep their identity
+ * (and any analysis results keyed on it). Subclasses override the visit
+ * methods for the nodes they transform.
+ *
+ * Rebuilt nodes are not annotated, so the result must be analysed again
+ * before it is interpreted or generated.
+ */
+public abstract class AstRewriter implements Ast.Visitor<Ast> {
+
+    @SuppressWarnings("unchecked")
+    protected <T extends Ast> T rewrite(T ast) {
+        return (T) visit(ast);
+    }
+
+    protected <T extends Ast> Optional<T> rewrite(Optional<T> ast) {
+        if (ast.isEmpty()) {
+            return ast;
+        }
+        T rewritten = rewrite(ast.get());
+        return rewritten == ast.get() ? ast : Optional.of(rewritten);
+    }
+
+    /**
+     * Rewrites each node of a list, returning {@code asts} itself if none
+     * changed.
+     */
+    protected <T extends Ast> List<T> rewrite(List<T> asts) {
+        List<T> result = null;
+        for (int i = 0; i < asts.size(); i++) {
+            T rewritten = rewrite(asts.get(i));
+            if (result == null && rewritten != asts.get(i)) {
+                result = new ArrayList<>(asts.subList(0, i));
+            }
+            if (result != null) {
+                result.add(rewritten);
+            }
+        }
+        return result == null ? asts : result;
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        List<Ast.Global> globals = rewrite(ast.getGlobals());
+        List<Ast.Function> functions = rewrite(ast.getFunctions());
+        if (globals == ast.getGlobals() && functions == ast.getFunctions()) {
+            return ast;
+        }
+        return new Ast.Source(globals, functions);
+    }
+
+    @Override
+    public Ast visit(Ast.Global ast) {
+        Optional<Ast.Expression> value = rewrite(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Global(ast.getName(), ast.getTypeName(), ast.getMutable(), value);
+    }
+
+    @Override
+    public Ast visit(Ast.Function ast) {
+        List<Ast.Statement> statements = rewrite(ast.getStatements());
+        if (statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Function(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Expression ast) {
+        Ast.Expression expression = rewrite(ast.getExpression());
+        if (expression == ast.getExpression()) {
+            return ast;
+        }
+        return new Ast.Statement.Expression(expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Declaration ast) {
+        Optional<Ast.Expression> value = rewrite(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Statement.Declaration(ast.getName(), ast.getTypeName(), value);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Assignment ast) {
+        Ast.Expression receiver = rewrite(ast.getReceiver());
+        Ast.Expression value = rewrite(ast.getValue());
+        if (receiver == ast.getReceiver() && value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Statement.Assignment(receiver, value);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.If ast) {
+        Ast.Expression condition = rewrite(ast.getCondition());
+        List<Ast.Statement> thenStatements = rewrite(ast.getThenStatements());
+        List<Ast.Statement> elseStatements = rewrite(ast.getElseStatements());
+        if (condition == ast.getCondition() && thenStatements == ast.getThenStatements() && elseStatements == ast.getElseStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.If(condition, thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Switch ast) {
+        Ast.Expression condition = rewrite(ast.getCondition());
+        List<Ast.Statement.Case> cases = rewrite(ast.getCases());
+        if (condition == ast.getCondition() && cases == ast.getCases()) {
+            return ast;
+        }
+        return new Ast.Statement.Switch(condition, cases);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Case ast) {
+        Optional<Ast.Expression> value = rewrite(ast.getValue());
+        List<Ast.Statement> statements = rewrite(ast.getStatements());
+        if (value == ast.getValue() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.Case(value, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.While ast) {
+        Ast.Expression condition = rewrite(ast.getCondition());
+        List<Ast.Statement> statements = rewrite(ast.getStatements());
+        if (condition == ast.getCondition() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.While(condition, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Return ast) {
+        Ast.Expression value = rewrite(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Statement.Return(value);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Literal ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Group ast) {
+        Ast.Expression expression = rewrite(ast.getExpression());
+        if (expression == ast.getExpression()) {
+            return ast;
+        }
+        return new Ast.Expression.Group(expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        Ast.Expression left = rewrite(ast.getLeft());
+        Ast.Expression right = rewrite(ast.getRight());
+        if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        return new Ast.Expression.Binary(ast.getOperator(), left, right);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Access ast) {
+        Optional<Ast.Expression> offset = rewrite(ast.getOffset());
+        if (offset == ast.getOffset()) {
+            return ast;
+        }
+        return new Ast.Expression.Access(offset, ast.getName());
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Function ast) {
+        List<Ast.Expression> arguments = rewrite(ast.getArguments());
+        if (arguments == ast.getArguments()) {
+            return ast;
+        }
+        return new Ast.Expression.Function(ast.getName(), arguments);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.PlcList ast) {
+        List<Ast.Expression> values = rewrite(ast.getValues());
+        if (values == ast.getValues()) {
+            return ast;
+        }
+        return new Ast.Expression.PlcList(values);
+    }
+
+}
@@ -0,0 +1,297 @@
+package plc.project;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes a versioned binary form of {@link Ast.Source}, so a
+ * program that has not changed can be loaded without running the
+ * {@link Lexer} and {@link Parser}. The file is the {@link FlatAst} arena
+ * written out column by column:
+ *
+ * - header: magic {@code PLCA}, format version, flags, node and child counts
+ * - the six node columns and the children array, as big-endian ints
+ * - the constant pool: a tag byte per entry followed by its payload
+ *
+ * The AST carries no source positions today, so no span section is written;
+ * the {@link #SPANS} flag is reserved for it and rejected on read.
+ *
+ * Reading checks every count against the bytes left and every node against
+ * the arena before decoding: a known kind, a source at the root and nowhere
+ * else, children within the children array and after their parent (so the
+ * tree cannot loop), exactly one parent for every other node, and only
+ * children of the kinds the {@link FlatAst} layout allows in each slot.
+ * Any malformed file is reported as an {@link IOException}.
+ */
+public final class AstSerializer {
+
+    public static final int MAGIC = 0x504C4341; // "PLCA"
+    public static final int VERSION = 1;
+    public static final int SPANS = 1;
+
+    private static final byte STRING = 0;
+    private static final byte INTEGER = 1;
+    private static final byte DECIMAL = 2;
+    private static final byte CHARACTER = 3;
+    private static final byte BOOLEAN = 4;
+
+    private static final int NONE = -1;
+    private static final int EXPRESSION = -2;
+    private static final int STATEMENT = -3;
+
+    private AstSerializer() {}
+
+    public static void write(Ast.Source source, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(source, out);
+        }
+    }
+
+    public static void write(Ast.Source source, OutputStream stream) throws IOException {
+        FlatAst flat = FlatAst.encode(source);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(0);
+        out.writeInt(flat.size());
+        out.writeInt(flat.children().length);
+        for (int[] column : flat.columns()) {
+            for (int value : column) {
+                out.writeInt(value);
+            }
+        }
+        for (int child : flat.children()) {
+            out.writeInt(child);
+        }
+        out.writeInt(flat.getConstantCount());
+        for (int i = 0; i < flat.getConstantCount(); i++) {
+            writeConstant(out, flat.getConstant(i));
+        }
+        out.flush();
+    }
+
+    /**
+     * Loads a serialized source by memory-mapping the file.
+     */
+    public static Ast.Source read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static Ast.Source read(ByteBuffer buffer) throws IOException {
+        try {
+            return decode(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException
+                 | IllegalArgumentException | ClassCastException e) {
+            throw new IOException("Malformed serialized AST.", e);
+        }
+    }
+
+    private static Ast.Source decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 5 * Integer.BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a serialized AST.");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported AST format version " + version + ".");
+        }
+        int flags = buffer.getInt();
+        if (flags != 0) {
+            throw new IOException("Unsupported AST format flags " + flags + ".");
+        }
+        int size = readCount(buffer, 6 * Integer.BYTES);
+        int childCount = readCount(buffer, Integer.BYTES);
+        if (size == 0) {
+            throw new IOException("Serialized AST has no root node.");
+        } else if ((6L * size + childCount) * Integer.BYTES > buffer.remaining()) {
+            throw new IOException("Truncated serialized AST.");
+        }
+        int[][] columns = new int[6][];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = readInts(buffer, size);
+        }
+        int[] children = readInts(buffer, childCount);
+        checkNodes(columns, children);
+        Object[] constants = new Object[readCount(buffer, 2)];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = readConstant(buffer);
+        }
+        FlatAst flat = new FlatAst(columns[0], columns[1], columns[2], columns[3], columns[4], columns[5], children, constants);
+        return flat.decode();
+    }
+
+    /**
+     * Checks that each node has a known kind and that its children are
+     * within the children array, come after it, have no other parent and
+     * are of the kinds its layout allows.
+     */
+    private static void checkNodes(int[][] columns, int[] children) throws IOException {
+        int[] kinds = columns[0];
+        int[] first = columns[4];
+        int[] count = columns[5];
+        boolean[] parented = new boolean[kinds.length];
+        for (int node = 0; node < kinds.length; node++) {
+            int kind = kinds[node];
+            if (kind < FlatAst.SOURCE || kind > FlatAst.LIST) {
+                throw new IOException("Unknown node kind " + kind + " at node " + node + ".");
+            } else if ((kind == FlatAst.SOURCE) != (node == 0)) {
+                throw new IOException("Node " + node + " of kind " + kind + " cannot be " + (node == 0 ? "the root." : "a source."));
+            } else if (first[node] < 0 || count[node] < 0 || (long) first[node] + count[node] > children.length) {
+                throw new IOException("Children of node " + node + " are out of bounds.");
+            }
+            int leading = leading(kind, columns[1][node], columns[2][node], columns[3][node], count[node]);
+            if (leading < 0) {
+                throw new IOException("Node " + node + " of kind " + kind + " has an invalid layout.");
+            }
+            for (int i = 0; i < count[node]; i++) {
+                int child = children[first[node] + i];
+                if (child <= node || child >= kinds.length) {
+                    throw new IOException("Child " + child + " of node " + node + " is out of order.");
+                } else if (parented[child]) {
+                    throw new IOException("Node " + child + " has more than one parent.");
+                } else if (!fits(slot(kind, i < leading), kinds[child])) {
+                    throw new IOException("Node " + child + " of kind " + kinds[child] + " cannot be child " + i + " of node " + node + ".");
+                }
+                parented[child] = true;
+            }
+        }
+        for (int node = 1; node < kinds.length; node++) {
+            if (!parented[node]) {
+                throw new IOException("Node " + node + " has no parent.");
+            }
+        }
+    }
+
+    /**
+     * Returns how many leading children a node has in its first slot (see
+     * {@link #slot(int, boolean)}), or -1 if its operands and child count do
+     * not match the layout of its kind.
+     */
+    private static int leading(int kind, int a, int b, int c, int count) {
+        switch (kind) {
+            case FlatAst.SOURCE: return a >= 0 && a <= count ? a : -1;
+            case FlatAst.FUNCTION: return c >= 0 && c <= count ? c : -1;
+            case FlatAst.GLOBAL:
+            case FlatAst.DECLARATION: return count <= 1 ? count : -1;
+            case FlatAst.PARAMETER:
+            case FlatAst.LITERAL: return count == 0 ? 0 : -1;
+            case FlatAst.EXPRESSION_STATEMENT:
+            case FlatAst.RETURN:
+            case FlatAst.GROUP: return count == 1 ? 1 : -1;
+            case FlatAst.ASSIGNMENT:
+            case FlatAst.BINARY: return count == 2 ? 2 : -1;
+            case FlatAst.IF: return a >= 0 && a < count ? 1 : -1;
+            case FlatAst.SWITCH:
+            case FlatAst.WHILE: return count >= 1 ? 1 : -1;
+            case FlatAst.CASE: return (a == 0 || a == 1) && a <= count ? a : -1;
+            case FlatAst.ACCESS: return (b == 0 || b == 1) && count == b ? b : -1;
+            default: return count;
+        }
+    }
+
+    /**
+     * Returns the kind, or {@link #EXPRESSION}, {@link #STATEMENT} or
+     * {@link #NONE}, allowed for a leading or a following child of a node.
+     */
+    private static int slot(int kind, boolean leading) {
+        switch (kind) {
+            case FlatAst.SOURCE: return leading ? FlatAst.GLOBAL : FlatAst.FUNCTION;
+            case FlatAst.FUNCTION: return leading ? FlatAst.PARAMETER : STATEMENT;
+            case FlatAst.IF:
+            case FlatAst.CASE:
+            case FlatAst.WHILE: return leading ? EXPRESSION : STATEMENT;
+            case FlatAst.SWITCH: return leading ? EXPRESSION : FlatAst.CASE;
+            case FlatAst.PARAMETER:
+            case FlatAst.LITERAL: return NONE;
+            default: return leading ? EXPRESSION : NONE;
+        }
+    }
+
+    private static boolean fits(int slot, int kind) {
+        switch (slot) {
+            case EXPRESSION: return kind >= FlatAst.LITERAL && kind <= FlatAst.LIST;
+            case STATEMENT: return kind >= FlatAst.EXPRESSION_STATEMENT && kind <= FlatAst.RETURN && kind != FlatAst.CASE;
+            default: return kind == slot;
+        }
+    }
+
+    /**
+     * Reads a count of items taking at least {@code bytes} each, checking it
+     * against the bytes left.
+     */
+    private static int readCount(ByteBuffer buffer, int bytes) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * bytes > buffer.remaining()) {
+            throw new IOException("Invalid count " + count + " with " + buffer.remaining() + " bytes left.");
+        }
+        return count;
+    }
+
+    private static void writeConstant(DataOutputStream out, Object constant) throws IOException {
+        if (constant instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(out, ((String) constant).getBytes(StandardCharsets.UTF_8));
+        } else if (constant instanceof BigInteger) {
+            out.writeByte(INTEGER);
+            writeBytes(out, ((BigInteger) constant).toByteArray());
+        } else if (constant instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            out.writeInt(((BigDecimal) constant).scale());
+            writeBytes(out, ((BigDecimal) constant).unscaledValue().toByteArray());
+        } else if (constant instanceof Character) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) constant);
+        } else if (constant instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) constant);
+        } else {
+            throw new IllegalArgumentException("Unsupported constant " + constant + ".");
+        }
+    }
+
+    private static Object readConstant(ByteBuffer buffer) throws IOException {
+        byte tag = buffer.get();
+        switch (tag) {
+            case STRING: return new String(readBytes(buffer), StandardCharsets.UTF_8);
+            case INTEGER: return new BigInteger(readBytes(buffer));
+            case DECIMAL: {
+                int scale = buffer.getInt();
+                return new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+            }
+            case CHARACTER: return buffer.getChar();
+            case BOOLEAN: return buffer.get() != 0;
+            default: throw new IOException("Unknown constant tag " + tag + ".");
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[readCount(buffer, 1)];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return values;
+    }
+
+}
@@ -0,0 +1,418 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The calls between the functions of an analysed source. Every {@link
+ * Ast.Expression.Function} call site becomes an edge from the function
+ * containing it to the function it resolved to; functions not defined in
+ * the source (such as {@code print}) appear only as callees. Calls in global
+ * initializers have no calling function; they are kept apart, see {@link
+ * #getInitializerCalls()}, but still count as callers of their callees.
+ *
+ * Functions are grouped into strongly-connected components, so a function
+ * is recursive if its component has several members or it calls itself. A
+ * call is in tail position when it is the value of a {@code RETURN}, i.e.
+ * nothing remains to be done in the caller.
+ */
+public final class CallGraph {
+
+    private final List<Environment.Function> functions = new ArrayList<>();
+    private final Map<Environment.Function, List<Call>> calls = new IdentityHashMap<>();
+    private final Map<Environment.Function, List<Call>> callers = new IdentityHashMap<>();
+    private final Map<Ast.Expression.Function, Call> sites = new IdentityHashMap<>();
+    private final List<Call> initializers = new ArrayList<>();
+    private final List<List<Environment.Function>> components = new ArrayList<>();
+    private final Map<Environment.Function, List<Environment.Function>> component = new IdentityHashMap<>();
+
+    private CallGraph() {}
+
+    /**
+     * Builds the call graph from the annotations the {@link Analyzer} left
+     * on the AST.
+     */
+    public static CallGraph build(Ast.Source ast) {
+        return build(ast, null);
+    }
+
+    /**
+     * Builds the call graph using the results in {@code analysis}, read
+     * through {@link Analysis#of(Analysis)}.
+     */
+    public static CallGraph build(Ast.Source ast, Analysis analysis) {
+        Analysis results = Analysis.of(analysis);
+        CallGraph graph = new CallGraph();
+        for (Ast.Function function : ast.getFunctions()) {
+            graph.node(results.getFunction(function));
+        }
+        for (Ast.Function function : ast.getFunctions()) {
+            new Collector(graph, results, results.getFunction(function)).visit(function);
+        }
+        for (Ast.Global global : ast.getGlobals()) {
+            new Collector(graph, results, null).visit(global);
+        }
+        graph.connect();
+        return graph;
+    }
+
+    /**
+     * Returns the functions of the source, in source order, followed by any
+     * other functions they call.
+     */
+    public List<Environment.Function> getFunctions() {
+        return Collections.unmodifiableList(functions);
+    }
+
+    /**
+     * Returns the calls made by {@code function}, in source order.
+     */
+    public List<Call> getCalls(Environment.Function function) {
+        return Collections.unmodifiableList(calls.getOrDefault(function, List.of()));
+    }
+
+    /**
+     * Returns the calls made by global initializers, in source order. Their
+     * caller is {@code null}.
+     */
+    public List<Call> getInitializerCalls() {
+        return Collections.unmodifiableList(initializers);
+    }
+
+    /**
+     * Returns the calls made to {@code function}.
+     */
+    public List<Call> getCallers(Environment.Function function) {
+        return Collections.unmodifiableList(callers.getOrDefault(function, List.of()));
+    }
+
+    /**
+     * Returns the call made at a call site.
+     */
+    public Call getCall(Ast.Expression.Function site) {
+        Call call = sites.get(site);
+        if (call == null) {
+            throw new IllegalStateException("call is uninitialized");
+        }
+        return call;
+    }
+
+    /**
+     * Returns the strongly-connected components, callees before callers.
+     */
+    public List<List<Environment.Function>> getComponents() {
+        return Collections.unmodifiableList(components);
+    }
+
+    public List<Environment.Function> getComponent(Environment.Function function) {
+        return component.get(function);
+    }
+
+    public boolean isRecursive(Environment.Function function) {
+        if (getComponent(function).size() > 1) {
+            return true;
+        }
+        for (Call call : getCalls(function)) {
+            if (call.getCallee() == function) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the graph in Graphviz DOT format. Tail calls are drawn bold,
+     * external functions dashed, and each recursive component in a cluster.
+     */
+    public String toDot() {
+        StringBuilder builder = new StringBuilder("digraph calls {\n");
+        Map<Environment.Function, Integer> ids = new IdentityHashMap<>();
+        for (Environment.Function function : functions) {
+            ids.put(function, ids.size());
+        }
+        int cluster = 0;
+        for (List<Environment.Function> members : components) {
+            boolean recursive = isRecursive(members.get(0));
+            String indent = recursive ? "        " : "    ";
+            if (recursive) {
+                builder.append("    subgraph cluster_").append(cluster++).append(" {\n");
+            }
+            for (Environment.Function function : members) {
+                builder.append(indent).append("f").append(ids.get(function))
+                        .append(" [label=\"").append(function.getName()).append("/").append(function.getArity()).append("\"")
+                        .append(calls.containsKey(function) ? "" : ", style=dashed")
+                        .append("];\n");
+            }
+            if (recursive) {
+                builder.append("    }\n");
+            }
+        }
+        for (Environment.Function function : functions) {
+            for (Call call : getCalls(function)) {
+                builder.append("    f").append(ids.get(call.getCaller()))
+                        .append(" -> f").append(ids.get(call.getCallee()))
+                        .append(call.isTail() ? " [style=bold]" : "")
+                        .append(";\n");
+            }
+        }
+        return builder.append("}\n").toString();
+    }
+
+    private void node(Environment.Function function) {
+        if (!callers.containsKey(function)) {
+            functions.add(function);
+            callers.put(function, new ArrayList<>());
+        }
+    }
+
+    private void add(Call call) {
+        node(call.getCallee());
+        (call.getCaller() == null ? initializers : calls.get(call.getCaller())).add(call);
+        callers.get(call.getCallee()).add(call);
+        sites.put(call.getSite(), call);
+    }
+
+    /**
+     * Finds the strongly-connected components with Tarjan's algorithm, using
+     * an explicit stack so deep call chains cannot overflow.
+     */
+    private void connect() {
+        Map<Environment.Function, Integer> index = new IdentityHashMap<>();
+        Map<Environment.Function, Integer> low = new IdentityHashMap<>();
+        Map<Environment.Function, Boolean> onStack = new IdentityHashMap<>();
+        Deque<Environment.Function> stack = new ArrayDeque<>();
+        for (Environment.Function root : functions) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            Deque<Environment.Function> path = new ArrayDeque<>();
+            Deque<Integer> next = new ArrayDeque<>();
+            index.put(root, index.size());
+            low.put(root, index.get(root));
+            stack.push(root);
+            onStack.put(root, true);
+            path.push(root);
+            next.push(0);
+            while (!path.isEmpty()) {
+                Environment.Function function = path.peek();
+                int edge = next.pop();
+                List<Call> out = getCalls(function);
+                if (edge < out.size()) {
+                    next.push(edge + 1);
+                    Environment.Function callee = out.get(edge).getCallee();
+                    if (!index.containsKey(callee)) {
+                        index.put(callee, index.size());
+                        low.put(callee, index.get(callee));
+                        stack.push(callee);
+                        onStack.put(callee, true);
+                        path.push(callee);
+                        next.push(0);
+                    } else if (onStack.getOrDefault(callee, false)) {
+                        low.put(function, Math.min(low.get(function), index.get(callee)));
+                    }
+                    continue;
+                }
+                path.pop();
+                if (!path.isEmpty()) {
+                    Environment.Function caller = path.peek();
+                    low.put(caller, Math.min(low.get(caller), low.get(function)));
+                }
+                if (low.get(function).equals(index.get(function))) {
+                    List<Environment.Function> members = new ArrayList<>();
+                    Environment.Function member;
+                    do {
+                        member = stack.pop();
+                        onStack.put(member, false);
+                        members.add(member);
+                    } while (member != function);
+                    Collections.reverse(members);
+                    List<Environment.Function> unmodifiable = Collections.unmodifiableList(members);
+                    components.add(unmodifiable);
+                    members.forEach(m -> component.put(m, unmodifiable));
+                }
+            }
+        }
+    }
+
+    /**
+     * A call from {@code caller} to {@code callee} at {@code site}. The
+     * caller is {@code null} for a call in a global initializer.
+     */
+    public static final class Call {
+
+        private final Environment.Function caller;
+        private final Environment.Function callee;
+        private final Ast.Expression.Function site;
+        private final boolean tail;
+
+        public Call(Environment.Function caller, Environment.Function callee, Ast.Expression.Function site, boolean tail) {
+            this.caller = caller;
+            this.callee = callee;
+            this.site = site;
+            this.tail = tail;
+        }
+
+        public Environment.Function getCaller() {
+            return caller;
+        }
+
+        public Environment.Function getCallee() {
+            return callee;
+        }
+
+        public Ast.Expression.Function getSite() {
+            return site;
+        }
+
+        public boolean isTail() {
+            return tail;
+        }
+
+        @Override
+        public String toString() {
+            return "Call{" +
+                    "caller=" + (caller == null ? "<global>" : caller.getName() + "/" + caller.getArity()) +
+                    ", callee=" + callee.getName() + "/" + callee.getArity() +
+                    ", tail=" + tail +
+                    '}';
+        }
+
+    }
+
+    /**
+     * Walks one function body or global initializer, adding an edge for each
+     * call site.
+     */
+    private static final class Collector implements Ast.Visitor<Void> {
+
+        private final CallGraph graph;
+        private final Analysis analysis;
+        private final Environment.Function caller;
+        private Ast.Expression tail;
+
+        private Collector(CallGraph graph, Analysis analysis, Environment.Function caller) {
+            this.graph = graph;
+            this.analysis = analysis;
+            this.caller = caller;
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            throw new UnsupportedOperationException("Use CallGraph.build(Ast.Source).");
+        }
+
+        @Override
+        public Void visit(Ast.Global ast) {
+            ast.getValue().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Function ast) {
+            graph.calls.put(caller, new ArrayList<>());
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Expression ast) {
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Declaration ast) {
+            ast.getValue().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Assignment ast) {
+            visit(ast.getReceiver());
+            visit(ast.getValue());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.If ast) {
+            visit(ast.getCondition());
+            ast.getThenStatements().forEach(this::visit);
+            ast.getElseStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Switch ast) {
+            visit(ast.getCondition());
+            ast.getCases().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Case ast) {
+            ast.getValue().ifPresent(this::visit);
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.While ast) {
+            visit(ast.getCondition());
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Return ast) {
+            tail = ast.getValue();
+            visit(ast.getValue());
+            tail = null;
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Literal ast) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Group ast) {
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Binary ast) {
+            visit(ast.getLeft());
+            visit(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Access ast) {
+            ast.getOffset().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Function ast) {
+            Environment.Function callee = analysis.getFunction(ast);
+            graph.add(new Call(caller, callee, ast, ast == tail));
+            ast.getArguments().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.PlcList ast) {
+            ast.getValues().forEach(this::visit);
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,359 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Evaluates repeated pure expressions once. Expressions are numbered by
+ * structure over resolved variables, so {@code xs[i] * xs[i]} or {@code a * b}
+ * computed twice in a block with no assignment to their operands in between
+ * has a single value number. The first occurrence is moved into a temporary,
+ * {@code LET $cse0 = xs[i];}, declared just before the statement containing
+ * it, and every occurrence is replaced by a read of the temporary.
+ *
+ * Only operators, list indexing and calls to functions that are {@link
+ * Environment.Function#isPure() pure} or only read list elements are
+ * numbered, so calls are only candidates once an {@link EffectAnalyzer} has
+ * run; a call that reads elements is made unavailable by list stores. A first occurrence is
+ * only moved if it is evaluated whenever its statement is (not to the right
+ * of {@code &&} or {@code ||}, nor in a case value or loop condition), if no
+ * call with effects is evaluated before it in the statement, and, if it can
+ * fail (division, exponentiation, indexing, a call or an operator on a
+ * value that may be NIL), if nothing before it in the statement can. A
+ * value stays available in nested blocks and after them unless they may
+ * write one of its operands; assignments, list stores and calls with
+ * effects make the values that read what they write unavailable.
+ * Temporaries are named with a {@code $}, which the lexer does not accept,
+ * so they cannot clash with a source name.
+ */
+public final class CommonSubexpressionEliminator extends AstRewriter {
+
+    private static final String PREFIX = "$cse";
+
+    private final Analysis analysis;
+    private NilAnalysis nils = NilAnalysis.unknown();
+    private final Map<Environment.Variable, Integer> ids = new IdentityHashMap<>();
+    private final Map<Environment.Function, Integer> functionIds = new IdentityHashMap<>();
+    private final Map<Ast.Expression, Value> values = new IdentityHashMap<>();
+    private final Map<Ast.Statement, List<Value>> hoisted = new IdentityHashMap<>();
+    private Map<String, Value> available = new HashMap<>();
+    private Ast.Statement statement;
+    private boolean effects;
+    private boolean failures;
+    private Ast.Expression defining;
+    private int temporaries = 0;
+    private int eliminated = 0;
+
+    /**
+     * A numbered value: its first occurrence, the statement that occurrence
+     * is in, what it reads and, once it is reused, its temporary.
+     */
+    private static final class Value {
+
+        private final Ast.Expression ast;
+        private final Ast.Statement statement;
+        private final Footprint reads;
+        private String temporary;
+
+        private Value(Ast.Expression ast, Ast.Statement statement, Footprint reads) {
+            this.ast = ast;
+            this.statement = statement;
+            this.reads = reads;
+        }
+
+    }
+
+    public CommonSubexpressionEliminator() {
+        this(null);
+    }
+
+    public CommonSubexpressionEliminator(Analysis analysis) {
+        this.analysis = Analysis.of(analysis);
+    }
+
+    /**
+     * Returns the number of expressions replaced by a temporary holding a
+     * value computed earlier.
+     */
+    public int getEliminatedCount() {
+        return eliminated;
+    }
+
+    /**
+     * Returns the number of temporaries introduced.
+     */
+    public int getTemporaryCount() {
+        return temporaries;
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        nils = NilAnalysis.of(ast, analysis);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Function ast) {
+        available = new HashMap<>();
+        scan(ast.getStatements());
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Function(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.If ast) {
+        Ast.Expression condition = rewrite(ast.getCondition());
+        List<Ast.Statement> thenStatements = statements(ast.getThenStatements());
+        List<Ast.Statement> elseStatements = statements(ast.getElseStatements());
+        if (condition == ast.getCondition() && thenStatements == ast.getThenStatements() && elseStatements == ast.getElseStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.If(condition, thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Case ast) {
+        Optional<Ast.Expression> value = rewrite(ast.getValue());
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (value == ast.getValue() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.Case(value, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.While ast) {
+        Ast.Expression condition = rewrite(ast.getCondition());
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (condition == ast.getCondition() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.While(condition, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Group ast) {
+        return replace(ast) ? temporary(ast) : super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        return replace(ast) ? temporary(ast) : super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Access ast) {
+        return replace(ast) ? temporary(ast) : super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Function ast) {
+        return replace(ast) ? temporary(ast) : super.visit(ast);
+    }
+
+    private boolean replace(Ast.Expression ast) {
+        return ast != defining && values.containsKey(ast) && values.get(ast).temporary != null;
+    }
+
+    private Ast.Expression temporary(Ast.Expression ast) {
+        return new Ast.Expression.Access(Optional.empty(), values.get(ast).temporary);
+    }
+
+    /**
+     * Rewrites a block, declaring the temporaries of each statement before
+     * it.
+     */
+    private List<Ast.Statement> statements(List<Ast.Statement> statements) {
+        List<Ast.Statement> result = new ArrayList<>();
+        boolean changed = false;
+        for (Ast.Statement statement : statements) {
+            for (Value value : hoisted.getOrDefault(statement, List.of())) {
+                if (value.temporary != null) {
+                    defining = value.ast;
+                    result.add(new Ast.Statement.Declaration(value.temporary, Optional.empty(), Optional.of(rewrite(value.ast))));
+                    defining = null;
+                    changed = true;
+                }
+            }
+            Ast.Statement rewritten = rewrite(statement);
+            changed |= rewritten != statement;
+            result.add(rewritten);
+        }
+        return changed ? result : statements;
+    }
+
+    /**
+     * Numbers the expressions of a block in evaluation order, starting with
+     * the values in {@link #available}.
+     */
+    private void scan(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            this.statement = statement;
+            effects = false;
+            failures = false;
+            scan(statement);
+        }
+    }
+
+    private void scan(Ast.Statement ast) {
+        if (ast instanceof Ast.Statement.Expression) {
+            scan(((Ast.Statement.Expression) ast).getExpression(), false);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            ((Ast.Statement.Declaration) ast).getValue().ifPresent(value -> scan(value, false));
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) ast;
+            Ast.Expression.Access receiver = (Ast.Expression.Access) assignment.getReceiver();
+            receiver.getOffset().ifPresent(offset -> scan(offset, false));
+            scan(assignment.getValue(), false);
+            kill(Footprint.writes(ast, analysis));
+        } else if (ast instanceof Ast.Statement.Return) {
+            scan(((Ast.Statement.Return) ast).getValue(), false);
+        } else if (ast instanceof Ast.Statement.If) {
+            Ast.Statement.If branch = (Ast.Statement.If) ast;
+            scan(branch.getCondition(), false);
+            nested(branch.getThenStatements(), available);
+            nested(branch.getElseStatements(), available);
+            kill(Footprint.writes(ast, analysis));
+        } else if (ast instanceof Ast.Statement.Switch) {
+            Ast.Statement.Switch branch = (Ast.Statement.Switch) ast;
+            scan(branch.getCondition(), false);
+            for (Ast.Statement.Case caseStatement : branch.getCases()) {
+                caseStatement.getValue().ifPresent(value -> scan(value, true));
+                nested(caseStatement.getStatements(), available);
+            }
+            kill(Footprint.writes(ast, analysis));
+        } else if (ast instanceof Ast.Statement.While) {
+            Ast.Statement.While loop = (Ast.Statement.While) ast;
+            kill(Footprint.writes(ast, analysis));
+            scan(loop.getCondition(), true);
+            nested(loop.getStatements(), available);
+        }
+    }
+
+    /**
+     * Scans a nested block starting from a copy of {@code outer}, then
+     * restores the state of the enclosing statement.
+     */
+    private void nested(List<Ast.Statement> statements, Map<String, Value> outer) {
+        Ast.Statement saved = statement;
+        boolean savedEffects = effects;
+        boolean savedFailures = failures;
+        available = new HashMap<>(outer);
+        scan(statements);
+        available = outer;
+        statement = saved;
+        effects = savedEffects;
+        failures = savedFailures;
+    }
+
+    /**
+     * Scans an expression; {@code conditional} is {@code true} if it is not
+     * evaluated whenever the current statement is.
+     */
+    private void scan(Ast.Expression ast, boolean conditional) {
+        Footprint reads = new Footprint();
+        String key = ast instanceof Ast.Expression.Literal || (ast instanceof Ast.Expression.Access
+                && ((Ast.Expression.Access) ast).getOffset().isEmpty()) ? null : key(ast, reads);
+        if (key != null && available.containsKey(key)) {
+            reuse(available.get(key), ast);
+            return;
+        }
+        boolean movable = key != null && !conditional && !effects && !(failures && Footprint.mayFail(ast, nils));
+        if (ast instanceof Ast.Expression.Group) {
+            scanOperands((Ast.Expression.Binary) ((Ast.Expression.Group) ast).getExpression(), conditional);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            scanOperands((Ast.Expression.Binary) ast, conditional);
+        } else if (ast instanceof Ast.Expression.Access) {
+            ((Ast.Expression.Access) ast).getOffset().ifPresent(offset -> scan(offset, conditional));
+            failures |= ((Ast.Expression.Access) ast).getOffset().isPresent();
+        } else if (ast instanceof Ast.Expression.Function) {
+            ((Ast.Expression.Function) ast).getArguments().forEach(argument -> scan(argument, conditional));
+            Environment.Function function = analysis.getFunction((Ast.Expression.Function) ast);
+            if (!Footprint.readsOnly(function)) {
+                effects = true;
+                Footprint writes = new Footprint();
+                writes.addEffects(function.getEffects());
+                kill(writes);
+            }
+            failures = true;
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            ((Ast.Expression.PlcList) ast).getValues().forEach(value -> scan(value, conditional));
+        }
+        if (movable) {
+            Value value = new Value(ast, statement, reads);
+            available.put(key, value);
+            values.put(ast, value);
+            hoisted.computeIfAbsent(statement, s -> new ArrayList<>()).add(value);
+        }
+    }
+
+    private void scanOperands(Ast.Expression.Binary ast, boolean conditional) {
+        scan(ast.getLeft(), conditional);
+        boolean shortCircuit = ast.getOperator().equals("&&") || ast.getOperator().equals("||");
+        scan(ast.getRight(), conditional || shortCircuit);
+        failures |= Footprint.operatorMayFail(ast, nils);
+    }
+
+    private void reuse(Value value, Ast.Expression ast) {
+        if (value.temporary == null) {
+            value.temporary = PREFIX + temporaries++;
+        }
+        values.put(ast, value);
+        eliminated++;
+    }
+
+    private void kill(Footprint writes) {
+        available.values().removeIf(value -> writes.overlaps(value.reads));
+    }
+
+    /**
+     * Returns the value number of an expression, recording what it reads, or
+     * {@code null} if it is not pure.
+     */
+    private String key(Ast.Expression ast, Footprint reads) {
+        if (ast instanceof Ast.Expression.Literal) {
+            Object literal = ((Ast.Expression.Literal) ast).getLiteral();
+            return literal == null ? "nil" : literal.getClass().getSimpleName() + literal.toString().length() + ":" + literal;
+        } else if (ast instanceof Ast.Expression.Group) {
+            return key(((Ast.Expression.Group) ast).getExpression(), reads);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            String left = key(binary.getLeft(), reads);
+            String right = key(binary.getRight(), reads);
+            return left == null || right == null ? null : "(" + left + binary.getOperator() + right + ")";
+        } else if (ast instanceof Ast.Expression.Access) {
+            Ast.Expression.Access access = (Ast.Expression.Access) ast;
+            reads.read(access, analysis);
+            String name = (analysis.getAddress(access).isGlobal() ? "g" : "v") + ids.computeIfAbsent(analysis.getVariable(access), v -> ids.size());
+            if (access.getOffset().isEmpty()) {
+                return name;
+            }
+            String offset = key(access.getOffset().get(), reads);
+            return offset == null ? null : name + "[" + offset + "]";
+        } else if (ast instanceof Ast.Expression.Function) {
+            Ast.Expression.Function call = (Ast.Expression.Function) ast;
+            Environment.Function function = analysis.getFunction(call);
+            if (!Footprint.readsOnly(function)) {
+                return null;
+            }
+            reads.addCall(function);
+            List<String> arguments = new ArrayList<>();
+            for (Ast.Expression argument : call.getArguments()) {
+                arguments.add(key(argument, reads));
+            }
+            if (arguments.contains(null)) {
+                return null;
+            }
+            return "f" + functionIds.computeIfAbsent(function, f -> functionIds.size()) + "(" + String.join(",", arguments) + ")";
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,150 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Evaluates binary expressions over literals ahead of time, with the same
+ * semantics as the {@link Interpreter}: {@link BigInteger} arithmetic,
+ * {@link BigDecimal} division rounded {@link RoundingMode#HALF_EVEN},
+ * string concatenation of any value with a string, and short-circuiting
+ * {@code &&} / {@code ||} (so {@code FALSE && x} folds even if {@code x} is
+ * not constant, as {@code x} is never evaluated).
+ *
+ * Anything that would throw at runtime is left in place, including the
+ * interpreter's rejection of a zero dividend. Results that the {@link
+ * Analyzer} would not accept as literals (Integers wider than 32 bits,
+ * Decimals outside its range) are left unfolded too, so a source that
+ * analysed before folding still analyses afterwards. Folding a Decimal
+ * computes the exact interpreter result, which generated code would
+ * otherwise compute in {@code double}.
+ */
+public final class ConstantFolder extends AstRewriter {
+
+    private static final int MAX_EXPONENT = 64;
+
+    private int folds = 0;
+
+    /**
+     * Returns the number of expressions replaced so far.
+     */
+    public int getFoldCount() {
+        return folds;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Group ast) {
+        Ast.Expression expression = rewrite(ast.getExpression());
+        if (expression instanceof Ast.Expression.Literal) {
+            return expression;
+        }
+        return expression == ast.getExpression() ? ast : new Ast.Expression.Group(expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        Ast.Expression left = rewrite(ast.getLeft());
+        Ast.Expression right = rewrite(ast.getRight());
+        Object value = null;
+        if (left instanceof Ast.Expression.Literal) {
+            Object lhs = ((Ast.Expression.Literal) left).getLiteral();
+            if (ast.getOperator().equals("&&") && Boolean.FALSE.equals(lhs)) {
+                value = false;
+            } else if (ast.getOperator().equals("||") && Boolean.TRUE.equals(lhs)) {
+                value = true;
+            } else if (right instanceof Ast.Expression.Literal) {
+                value = evaluate(ast.getOperator(), lhs, ((Ast.Expression.Literal) right).getLiteral());
+            }
+        }
+        if (value != null && representable(value)) {
+            folds++;
+            return new Ast.Expression.Literal(value);
+        }
+        if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        return new Ast.Expression.Binary(ast.getOperator(), left, right);
+    }
+
+    /**
+     * Returns the value the interpreter computes for {@code lhs op rhs}, or
+     * {@code null} if it would throw (or either operand is {@code NIL}).
+     */
+    private static Object evaluate(String op, Object lhs, Object rhs) {
+        if (lhs == null || rhs == null) {
+            return null;
+        }
+        switch (op) {
+            case "&&":
+            case "||":
+                if (!(lhs instanceof Boolean) || !(rhs instanceof Boolean)) {
+                    return null;
+                }
+                return op.equals("&&") ? (Boolean) lhs && (Boolean) rhs : (Boolean) lhs || (Boolean) rhs;
+            case "==":
+                return lhs.equals(rhs);
+            case "!=":
+                return !lhs.equals(rhs);
+            case "+":
+                if (lhs instanceof String || rhs instanceof String) {
+                    return "" + lhs + rhs;
+                } else if (lhs instanceof BigInteger && rhs instanceof BigInteger) {
+                    return ((BigInteger) lhs).add((BigInteger) rhs);
+                } else if (lhs instanceof BigDecimal && rhs instanceof BigDecimal) {
+                    return ((BigDecimal) lhs).add((BigDecimal) rhs);
+                }
+                return null;
+            case "-":
+            case "*":
+                if (lhs instanceof BigInteger && rhs instanceof BigInteger) {
+                    return op.equals("*") ? ((BigInteger) lhs).multiply((BigInteger) rhs) : ((BigInteger) lhs).subtract((BigInteger) rhs);
+                } else if (lhs instanceof BigDecimal && rhs instanceof BigDecimal) {
+                    return op.equals("*") ? ((BigDecimal) lhs).multiply((BigDecimal) rhs) : ((BigDecimal) lhs).subtract((BigDecimal) rhs);
+                }
+                return null;
+            case "/":
+                if (lhs.equals(BigInteger.ZERO) || lhs.equals(BigDecimal.ZERO)) {
+                    return null;
+                } else if (lhs instanceof BigInteger && rhs instanceof BigInteger && ((BigInteger) rhs).signum() != 0) {
+                    return ((BigInteger) lhs).divide((BigInteger) rhs);
+                } else if (lhs instanceof BigDecimal && rhs instanceof BigDecimal && ((BigDecimal) rhs).signum() != 0) {
+                    return ((BigDecimal) lhs).divide((BigDecimal) rhs, RoundingMode.HALF_EVEN);
+                }
+                return null;
+            case "^":
+                if (!(lhs instanceof BigInteger) || !(rhs instanceof BigInteger)) {
+                    return null;
+                }
+                int exponent = ((BigInteger) rhs).intValue();
+                if (exponent < 0 || exponent > MAX_EXPONENT) {
+                    return null;
+                }
+                return ((BigInteger) lhs).pow(exponent);
+            case "<":
+            case ">":
+                if (lhs.getClass() != rhs.getClass() || !(lhs instanceof Comparable)) {
+                    return null;
+                }
+                @SuppressWarnings("unchecked")
+                int comparison = ((Comparable<Object>) lhs).compareTo(rhs);
+                return op.equals("<") ? comparison < 0 : comparison > 0;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns whether the {@link Analyzer} accepts {@code value} as a literal.
+     */
+    private static boolean representable(Object value) {
+        if (value instanceof BigInteger) {
+            return ((BigInteger) value).toByteArray().length <= 4;
+        } else if (value instanceof BigDecimal) {
+            double decimal = ((BigDecimal) value).doubleValue();
+            return decimal <= Double.MAX_VALUE && decimal >= Double.MIN_VALUE;
+        }
+        return true;
+    }
+
+}
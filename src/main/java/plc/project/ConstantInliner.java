@@ -0,0 +1,146 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Replaces reads of constant {@code VAL} globals with their values. A global
+ * is constant if it is immutable and its initializer is a literal or an
+ * expression over literals and earlier constants that both backends evaluate
+ * the same way: Integer {@code + - * /} whose result fits in an {@code int},
+ * String concatenation and Boolean {@code && ||}. Decimal arithmetic is left
+ * alone since the interpreter uses {@link BigDecimal} and generated code uses
+ * {@code double}.
+ *
+ * The source must have been analysed, so accesses are matched to globals by
+ * variable rather than by name and shadowing locals are never replaced. The
+ * constant globals stay declared, with their initializer reduced to a
+ * literal; the rewritten source must be analysed again before use.
+ */
+public final class ConstantInliner extends AstRewriter {
+
+    private final Analysis analysis;
+    private final Map<Environment.Variable, Object> constants = new IdentityHashMap<>();
+    private final Map<String, Object> names = new LinkedHashMap<>();
+
+    public ConstantInliner() {
+        this(null);
+    }
+
+    public ConstantInliner(Analysis analysis) {
+        this.analysis = Analysis.of(analysis);
+    }
+
+    /**
+     * Returns the value of each inlined global, by name, in source order.
+     */
+    public Map<String, Object> getConstants() {
+        return Collections.unmodifiableMap(names);
+    }
+
+    @Override
+    public Ast visit(Ast.Global ast) {
+        if (ast.getMutable() || ast.getValue().isEmpty()) {
+            return super.visit(ast);
+        }
+        Object value = evaluate(ast.getValue().get());
+        if (value == null || !matches(ast.getTypeName(), value)) {
+            return super.visit(ast);
+        }
+        constants.put(analysis.getVariable(ast), value);
+        names.put(ast.getName(), value);
+        if (ast.getValue().get() instanceof Ast.Expression.Literal) {
+            return ast;
+        }
+        return new Ast.Global(ast.getName(), ast.getTypeName(), false, Optional.of(new Ast.Expression.Literal(value)));
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Assignment ast) {
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        Ast.Expression target = receiver.getOffset().isPresent() ? rewrite(receiver) : receiver;
+        Ast.Expression value = rewrite(ast.getValue());
+        if (target == receiver && value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Statement.Assignment(target, value);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isEmpty() && constants.containsKey(analysis.getVariable(ast))) {
+            return new Ast.Expression.Literal(constants.get(analysis.getVariable(ast)));
+        }
+        return super.visit(ast);
+    }
+
+    /**
+     * Returns the value of a constant expression, or {@code null} if it is
+     * not one.
+     */
+    private Object evaluate(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Literal) {
+            return ((Ast.Expression.Literal) ast).getLiteral();
+        } else if (ast instanceof Ast.Expression.Group) {
+            return evaluate(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Access) {
+            Ast.Expression.Access access = (Ast.Expression.Access) ast;
+            return access.getOffset().isEmpty() ? constants.get(analysis.getVariable(access)) : null;
+        } else if (!(ast instanceof Ast.Expression.Binary)) {
+            return null;
+        }
+        Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+        Object left = evaluate(binary.getLeft());
+        Object right = evaluate(binary.getRight());
+        if (left == null || right == null || left.getClass() != right.getClass()) {
+            return null;
+        }
+        switch (binary.getOperator()) {
+            case "&&":
+                return left instanceof Boolean ? (Boolean) left && (Boolean) right : null;
+            case "||":
+                return left instanceof Boolean ? (Boolean) left || (Boolean) right : null;
+            case "+":
+                if (left instanceof String) {
+                    return (String) left + right;
+                }
+                return left instanceof BigInteger ? fit(((BigInteger) left).add((BigInteger) right)) : null;
+            case "-":
+                return left instanceof BigInteger ? fit(((BigInteger) left).subtract((BigInteger) right)) : null;
+            case "*":
+                return left instanceof BigInteger ? fit(((BigInteger) left).multiply((BigInteger) right)) : null;
+            case "/":
+                if (!(left instanceof BigInteger) || ((BigInteger) left).signum() == 0 || ((BigInteger) right).signum() == 0) {
+                    return null;
+                }
+                return fit(((BigInteger) left).divide((BigInteger) right));
+            default:
+                return null;
+        }
+    }
+
+    private static BigInteger fit(BigInteger value) {
+        return value.bitLength() < Integer.SIZE ? value : null;
+    }
+
+    /**
+     * Returns whether a literal of {@code value} has the declared type, so
+     * inlining it cannot change how the uses type check.
+     */
+    private static boolean matches(String typeName, Object value) {
+        switch (typeName) {
+            case "Integer": return value instanceof BigInteger;
+            case "Decimal": return value instanceof BigDecimal;
+            case "Boolean": return value instanceof Boolean;
+            case "Character": return value instanceof Character;
+            case "String": return value instanceof String;
+            default: return false;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the effects of every function in an analysed source and records
+ * them with {@link Environment.Function#setEffects(Set)}. Each body is
+ * scanned once for its own effects (global reads and writes, list element
+ * reads and assignments) and the functions it calls; the summaries are then joined
+ * over the call graph until they stop changing, so recursive functions get
+ * the union of everything they can reach.
+ *
+ * Calls to functions that are not defined in the source keep whatever
+ * effects they already have, which is every effect unless set explicitly
+ * (the {@link Analyzer} marks {@code print} as {@link Environment.Effect#IO}).
+ */
+public final class EffectAnalyzer implements Ast.Visitor<Void> {
+
+    private final Analysis analysis;
+    private final Map<Environment.Function, Set<Environment.Effect>> local = new IdentityHashMap<>();
+    private final Map<Environment.Function, List<Environment.Function>> calls = new IdentityHashMap<>();
+    private Set<Environment.Effect> effects;
+    private List<Environment.Function> callees;
+
+    public EffectAnalyzer() {
+        this(null);
+    }
+
+    public EffectAnalyzer(Analysis analysis) {
+        this.analysis = Analysis.of(analysis);
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        for (Ast.Function function : ast.getFunctions()) {
+            visit(function);
+        }
+        for (Environment.Function function : local.keySet()) {
+            function.setEffects(EnumSet.noneOf(Environment.Effect.class));
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Environment.Function, Set<Environment.Effect>> entry : local.entrySet()) {
+                Set<Environment.Effect> summary = EnumSet.copyOf(entry.getValue());
+                for (Environment.Function callee : calls.get(entry.getKey())) {
+                    summary.addAll(callee.getEffects());
+                }
+                if (!summary.equals(entry.getKey().getEffects())) {
+                    entry.getKey().setEffects(summary);
+                    changed = true;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        effects = EnumSet.noneOf(Environment.Effect.class);
+        callees = new ArrayList<>();
+        ast.getStatements().forEach(this::visit);
+        local.put(analysis.getFunction(ast), effects);
+        calls.put(analysis.getFunction(ast), callees);
+        effects = null;
+        callees = null;
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        if (receiver.getOffset().isPresent()) {
+            effects.add(Environment.Effect.MUTATES_LISTS);
+            visit(receiver.getOffset().get());
+        }
+        if (analysis.getAddress(receiver).isGlobal()) {
+            effects.add(Environment.Effect.WRITES_GLOBALS);
+        }
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        visit(ast.getCondition());
+        ast.getCases().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        ast.getValue().ifPresent(this::visit);
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        visit(ast.getCondition());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        if (analysis.getAddress(ast).isGlobal()) {
+            effects.add(Environment.Effect.READS_GLOBALS);
+        }
+        if (ast.getOffset().isPresent()) {
+            effects.add(Environment.Effect.READS_LISTS);
+        }
+        ast.getOffset().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        callees.add(analysis.getFunction(ast));
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        return null;
+    }
+
+}
@@ -2,9 +2,14 @@ package plc.project;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class Environment {
 
@@ -21,20 +26,206 @@ public final class Environment {
 
     });
 
-    private static final Map<String, Type> TYPES = new HashMap<>();
+    private static final TypeRegistry BASE = new TypeRegistry(List.of(Type.ANY, Type.NIL, Type.COMPARABLE,
+            Type.BOOLEAN, Type.INTEGER, Type.DECIMAL, Type.CHARACTER, Type.STRING));
+    private static final TypeRegistry DEFAULT = new TypeRegistry(BASE);
+
+    /**
+     * Returns the immutable registry of built-in types, which per-compilation
+     * registries should extend with {@code new TypeRegistry(getBaseRegistry())}.
+     */
+    public static TypeRegistry getBaseRegistry() {
+        return BASE;
+    }
+
+    /**
+     * Returns the shared registry used by {@link #getType(String)} and {@link
+     * #registerType(Type)}.
+     */
+    public static TypeRegistry getDefaultRegistry() {
+        return DEFAULT;
+    }
 
     public static Type getType(String name) {
-        if (!TYPES.containsKey(name)) {
+        return DEFAULT.getType(name);
+    }
+
+    public static void registerType(Type type) {
+        DEFAULT.registerType(type);
+    }
+
+    /**
+     * A set of named types layered over a parent registry. The base registry
+     * is immutable; overlays can be read and extended from any thread, and a
+     * type registered in an overlay is only visible through that overlay.
+     *
+     * Registering a type gives it a dense id, which it keeps. The built-in
+     * types are numbered first; an overlay of the base and every overlay
+     * layered over it share one counter for the rest, so ids never clash in
+     * a chain of registries while separate compilations each start again
+     * after the built-ins. A type can therefore only be registered once.
+     * Each registry keeps a bit matrix of which of the types visible through
+     * it are assignable to which, indexed by id, so {@link #isAssignable} is
+     * a bit test. The matrix belongs to the registry and is dropped with it.
+     */
+    public static final class TypeRegistry {
+
+        private final TypeRegistry parent;
+        private final Map<String, Type> types;
+        private final AtomicInteger ids;
+        private Matrix matrix;
+
+        private TypeRegistry(List<Type> types) {
+            Map<String, Type> map = new HashMap<>();
+            for (int i = 0; i < types.size(); i++) {
+                map.put(types.get(i).getName(), types.get(i));
+                types.get(i).id = i;
+            }
+            this.parent = null;
+            this.types = Collections.unmodifiableMap(map);
+            this.ids = null;
+            this.matrix = new Matrix(new Type[0], new long[0][]).extend(types.toArray(new Type[0]));
+        }
+
+        public TypeRegistry(TypeRegistry parent) {
+            this.parent = parent;
+            this.types = new ConcurrentHashMap<>();
+            this.ids = parent.ids != null ? parent.ids : new AtomicInteger(parent.matrix.types.length);
+            this.matrix = parent.matrix;
+        }
+
+        public TypeRegistry getParent() {
+            return parent;
+        }
+
+        public boolean hasType(String name) {
+            return types.containsKey(name) || (parent != null && parent.hasType(name));
+        }
+
+        public Type getType(String name) {
+            for (TypeRegistry registry = this; registry != null; registry = registry.parent) {
+                Type type = registry.types.get(name);
+                if (type != null) {
+                    return type;
+                }
+            }
             throw new RuntimeException("Unknown type " + name + ".");
         }
-        return TYPES.get(name);
+
+        public void registerType(Type type) {
+            if (parent == null) {
+                throw new UnsupportedOperationException("The base type registry is immutable.");
+            }
+            synchronized (type) {
+                if (type.id >= 0 || parent.hasType(type.getName()) || types.putIfAbsent(type.getName(), type) != null) {
+                    throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
+                }
+                type.id = ids.getAndIncrement();
+            }
+            synchronized (this) {
+                matrix = matrix.extend(visible());
+            }
+        }
+
+        /**
+         * Returns the id of a type visible through this registry, or {@code
+         * -1} if it is not.
+         */
+        public int getId(Type type) {
+            return isVisible(type) ? type.id : -1;
+        }
+
+        /**
+         * Returns whether a value of {@code type} can be assigned to {@code
+         * target} (see {@link Type#isAssignable}), with a bit test if both
+         * are visible through this registry. The matrix is brought up to date
+         * the first time a type its parents registered since is tested.
+         */
+        public boolean isAssignable(Type target, Type type) {
+            Matrix matrix = this.matrix;
+            if (!matrix.covers(target) || !matrix.covers(type)) {
+                if (!isVisible(target) || !isVisible(type)) {
+                    return Type.isAssignable(target, type);
+                }
+                synchronized (this) {
+                    this.matrix = matrix = this.matrix.extend(visible());
+                }
+            }
+            return (matrix.rows[target.id][type.id >>> 6] & (1L << type.id)) != 0;
+        }
+
+        private boolean isVisible(Type type) {
+            for (TypeRegistry registry = this; registry != null; registry = registry.parent) {
+                if (registry.types.get(type.getName()) == type) {
+                    return type.id >= 0;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the types visible through this registry, indexed by id.
+         * Ids of types only visible through other overlays are left null.
+         */
+        private Type[] visible() {
+            Type[] visible = new Type[ids.get()];
+            for (TypeRegistry registry = this; registry != null; registry = registry.parent) {
+                for (Type type : registry.types.values()) {
+                    if (type.id >= 0) {
+                        visible[type.id] = type;
+                    }
+                }
+            }
+            return visible;
+        }
+
     }
 
-    public static void registerType(Type type) {
-        if (TYPES.containsKey(type.getName())) {
-            throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
+    /**
+     * The assignability bits of the types visible through a registry, where
+     * {@code rows[target.id]} is a bit set over type ids. A matrix is never
+     * mutated; registering a type replaces it, so a reader holding an older
+     * one only finds it missing the newer types.
+     */
+    private static final class Matrix {
+
+        private final Type[] types;
+        private final long[][] rows;
+
+        private Matrix(Type[] types, long[][] rows) {
+            this.types = types;
+            this.rows = rows;
+        }
+
+        private boolean covers(Type type) {
+            int id = type.id;
+            return id >= 0 && id < types.length && types[id] == type;
+        }
+
+        /**
+         * Returns a matrix over {@code types}, which holds every type of this
+         * one at the same index. Only the bits of types new to it are
+         * computed.
+         */
+        private Matrix extend(Type[] types) {
+            int words = (types.length + 63) >>> 6;
+            long[][] matrix = new long[types.length][];
+            for (int row = 0; row < types.length; row++) {
+                boolean known = row < this.types.length && this.types[row] != null;
+                matrix[row] = known ? Arrays.copyOf(rows[row], words) : new long[words];
+                if (types[row] == null) {
+                    continue;
+                }
+                for (int column = 0; column < types.length; column++) {
+                    boolean computed = known && column < this.types.length && this.types[column] != null;
+                    if (types[column] != null && !computed && Type.isAssignable(types[row], types[column])) {
+                        matrix[row][column >>> 6] |= 1L << column;
+                    }
+                }
+            }
+            return new Matrix(types, matrix);
         }
-        TYPES.put(type.getName(), type);
+
     }
 
     public static final class Type {
@@ -51,6 +242,7 @@ public final class Environment {
         private final String name;
         private final String jvmName;
         private final Scope scope;
+        private int id = -1;
 
         public Type(String name, String jvmName, Scope scope) {
             this.name = name;
@@ -78,6 +270,24 @@ public final class Environment {
             return scope.lookupFunction(name, arity + 1);
         }
 
+        /**
+         * Returns whether a value of {@code type} can be assigned to {@code
+         * target}: the types are equal, the target is {@link #ANY}, or the
+         * target is {@link #COMPARABLE} and the type is one of the built-in
+         * comparable types. {@link TypeRegistry#isAssignable} answers the
+         * same question with a bit test.
+         */
+        public static boolean isAssignable(Type target, Type type) {
+            if (target.equals(type) || target.equals(ANY)) {
+                return true;
+            }
+            return target.equals(COMPARABLE)
+                    && (type.getName().equals("Integer")
+                    || type.getName().equals("Decimal")
+                    || type.getName().equals("Character")
+                    || type.getName().equals("String"));
+        }
+
         @Override
         public String toString() {
             return "Type{" +
@@ -190,6 +400,70 @@ public final class Environment {
 
     }
 
+    /**
+     * A lexical address resolved by the {@link Analyzer}: the number of block
+     * scopes between a use and its definition ({@code depth}) and the index of
+     * the variable within that scope ({@code slot}). Globals have a fixed slot
+     * in the global table and a depth of {@code -1}.
+     */
+    public static final class Address {
+
+        private final int depth;
+        private final int slot;
+
+        public Address(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        public static Address global(int slot) {
+            return new Address(-1, slot);
+        }
+
+        public boolean isGlobal() {
+            return depth == -1;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Address &&
+                    depth == ((Address) obj).depth &&
+                    slot == ((Address) obj).slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * depth + slot;
+        }
+
+        @Override
+        public String toString() {
+            return isGlobal() ? "Address{global=" + slot + "}" : "Address{depth=" + depth + ", slot=" + slot + "}";
+        }
+
+    }
+
+    /**
+     * A side effect a function may have, as computed by the {@link
+     * EffectAnalyzer}. A function with no effects is pure; one that indexes a
+     * list is not, as its result depends on the elements when it is called.
+     */
+    public enum Effect {
+        READS_GLOBALS,
+        READS_LISTS,
+        WRITES_GLOBALS,
+        MUTATES_LISTS,
+        IO
+    }
+
     public static final class Function {
 
         private final String name;
@@ -197,6 +471,7 @@ public final class Environment {
         private final List<Type> parameterTypes;
         private final Type returnType;
         private final java.util.function.Function<List<PlcObject>, PlcObject> function;
+        private volatile Set<Effect> effects = Collections.unmodifiableSet(EnumSet.allOf(Effect.class));
 
         public Function(String name, int arity, java.util.function.Function<List<PlcObject>, PlcObject> function) {
             this(name, name, new ArrayList<>(), Type.ANY, function);
@@ -234,6 +509,22 @@ public final class Environment {
             return parameterTypes.size();
         }
 
+        /**
+         * Returns the effects of calling this function. Until they have been
+         * computed every effect is assumed.
+         */
+        public Set<Effect> getEffects() {
+            return effects;
+        }
+
+        public void setEffects(Set<Effect> effects) {
+            this.effects = Collections.unmodifiableSet(effects.isEmpty() ? EnumSet.noneOf(Effect.class) : EnumSet.copyOf(effects));
+        }
+
+        public boolean isPure() {
+            return effects.isEmpty();
+        }
+
         public PlcObject invoke(List<PlcObject> arguments) {
             return function.apply(arguments);
         }
@@ -262,14 +553,6 @@ public final class Environment {
     }
 
     static {
-        registerType(Type.ANY);
-        registerType(Type.NIL);
-        registerType(Type.COMPARABLE);
-        registerType(Type.BOOLEAN);
-        registerType(Type.INTEGER);
-        registerType(Type.DECIMAL);
-        registerType(Type.CHARACTER);
-        registerType(Type.STRING);
         Type.ANY.scope.defineFunction("stringify", "toString", Arrays.asList(), Type.STRING, args -> Environment.NIL);
         Type.COMPARABLE.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.COMPARABLE), Type.COMPARABLE, args -> Environment.NIL);
         Type.INTEGER.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.INTEGER), Type.INTEGER, args -> Environment.NIL);
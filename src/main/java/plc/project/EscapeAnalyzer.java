@@ -0,0 +1,239 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Determines which list values can escape the variable that holds them. List
+ * literals only occur as {@code LIST} global initializers, so each global
+ * list is an allocation site; its value escapes if an access without an
+ * offset ever reads the list as a whole, for instance to store it in another
+ * variable, pass it to a function or return it. A list that only ever
+ * appears as {@code list[i]} is never observed as an object and never
+ * changes size, so an engine may give it unboxed, pre-sized storage. A list
+ * whose variable is assigned as a whole, {@code list = other;}, is replaced
+ * by a value of any size and counts as escaping too.
+ *
+ * The analysis also records which functions access each list; a
+ * non-escaping list used by a single function is effectively private to it.
+ */
+public final class EscapeAnalyzer implements Ast.Visitor<Void> {
+
+    /**
+     * How a list value can escape.
+     */
+    public enum Escape {
+        /** Stored into another variable (local or global). */
+        STORED,
+        /** Passed as an argument to a function. */
+        ARGUMENT,
+        /** Returned from a function. */
+        RETURNED,
+        /** Used as an operand, condition or other value. */
+        USED,
+        /** Replaced by assigning its variable a new value. */
+        REASSIGNED
+    }
+
+    private final Analysis analysis;
+    private final Map<Environment.Variable, Ast.Expression.PlcList> variables = new IdentityHashMap<>();
+    private final List<Ast.Expression.PlcList> lists = new ArrayList<>();
+    private final Map<Ast.Expression.PlcList, Set<Escape>> escapes = new IdentityHashMap<>();
+    private final Map<Ast.Expression.PlcList, Set<String>> functions = new IdentityHashMap<>();
+    private Escape context = Escape.USED;
+    private String function;
+
+    public EscapeAnalyzer() {
+        this(null);
+    }
+
+    public EscapeAnalyzer(Analysis analysis) {
+        this.analysis = Analysis.of(analysis);
+    }
+
+    /**
+     * Returns the list literals of the source, in source order.
+     */
+    public List<Ast.Expression.PlcList> getLists() {
+        return Collections.unmodifiableList(lists);
+    }
+
+    public Set<Escape> getEscapes(Ast.Expression.PlcList list) {
+        Set<Escape> set = escapes.get(list);
+        if (set == null) {
+            throw new IllegalStateException("escapes is uninitialized");
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    public boolean escapes(Ast.Expression.PlcList list) {
+        return !getEscapes(list).isEmpty();
+    }
+
+    /**
+     * Returns the keys (see {@link Analysis#key}) of the functions that
+     * access a list.
+     */
+    public Set<String> getFunctions(Ast.Expression.PlcList list) {
+        return Collections.unmodifiableSet(functions.get(list));
+    }
+
+    public int getNonEscapingCount() {
+        return (int) lists.stream().filter(list -> !escapes(list)).count();
+    }
+
+    private void visit(Ast.Expression ast, Escape context) {
+        Escape saved = this.context;
+        this.context = context;
+        try {
+            visit(ast);
+        } finally {
+            this.context = saved;
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        for (Ast.Global global : ast.getGlobals()) {
+            if (global.getValue().isPresent() && global.getValue().get() instanceof Ast.Expression.PlcList) {
+                Ast.Expression.PlcList list = (Ast.Expression.PlcList) global.getValue().get();
+                variables.put(analysis.getVariable(global), list);
+                lists.add(list);
+                escapes.put(list, EnumSet.noneOf(Escape.class));
+                functions.put(list, new LinkedHashSet<>());
+            }
+        }
+        ast.getGlobals().forEach(this::visit);
+        ast.getFunctions().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        ast.getValue().ifPresent(value -> visit(value, Escape.STORED));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        function = Analysis.key(ast);
+        ast.getStatements().forEach(this::visit);
+        function = null;
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression(), Escape.USED);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        ast.getValue().ifPresent(value -> visit(value, Escape.STORED));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        if (receiver.getOffset().isPresent()) {
+            visit(receiver.getOffset().get(), Escape.USED);
+        } else if (variables.containsKey(analysis.getVariable(receiver))) {
+            escapes.get(variables.get(analysis.getVariable(receiver))).add(Escape.REASSIGNED);
+        }
+        touch(receiver);
+        visit(ast.getValue(), Escape.STORED);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition(), Escape.USED);
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        visit(ast.getCondition(), Escape.USED);
+        ast.getCases().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        ast.getValue().ifPresent(value -> visit(value, Escape.USED));
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        visit(ast.getCondition(), Escape.USED);
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        visit(ast.getValue(), Escape.RETURNED);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression(), Escape.USED);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        visit(ast.getLeft(), Escape.USED);
+        visit(ast.getRight(), Escape.USED);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isPresent()) {
+            visit(ast.getOffset().get(), Escape.USED);
+        } else if (variables.containsKey(analysis.getVariable(ast))) {
+            escapes.get(variables.get(analysis.getVariable(ast))).add(context);
+        }
+        touch(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(argument -> visit(argument, Escape.ARGUMENT));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(value -> visit(value, Escape.STORED));
+        return null;
+    }
+
+    private void touch(Ast.Expression.Access ast) {
+        Ast.Expression.PlcList list = variables.get(analysis.getVariable(ast));
+        if (list != null && function != null) {
+            functions.get(list).add(function);
+        }
+    }
+
+}
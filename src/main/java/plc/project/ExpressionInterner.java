@@ -0,0 +1,184 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * A hash-consing factory for {@link Ast.Expression} nodes. Structurally equal
+ * expressions built through the same interner are the same object, so two
+ * interned expressions are equal exactly when they are identical, and each
+ * node's structural hash is computed once and cached.
+ *
+ * Interned nodes are shared, so they must not be annotated in place. Analyse
+ * them with {@code new Analyzer(scope, false)}, and only share {@link
+ * Ast.Expression.Access} and {@link Ast.Expression.Function} nodes between
+ * places where their names resolve to the same variable or function, since
+ * an {@link Analysis} records one binding per node.
+ */
+public final class ExpressionInterner {
+
+    private final Map<Key, Ast.Expression> table = new HashMap<>();
+    private final Map<Ast.Expression, Integer> hashes = new IdentityHashMap<>();
+    private int requests = 0;
+
+    public Ast.Expression.Literal literal(Object literal) {
+        return (Ast.Expression.Literal) intern(new Key("literal", literal, List.of()),
+                () -> new Ast.Expression.Literal(literal));
+    }
+
+    public Ast.Expression.Group group(Ast.Expression expression) {
+        Ast.Expression child = intern(expression);
+        return (Ast.Expression.Group) intern(new Key("group", null, List.of(child)),
+                () -> new Ast.Expression.Group(child));
+    }
+
+    public Ast.Expression.Binary binary(String operator, Ast.Expression left, Ast.Expression right) {
+        Ast.Expression l = intern(left), r = intern(right);
+        return (Ast.Expression.Binary) intern(new Key("binary", operator, List.of(l, r)),
+                () -> new Ast.Expression.Binary(operator, l, r));
+    }
+
+    public Ast.Expression.Access access(Optional<Ast.Expression> offset, String name) {
+        Optional<Ast.Expression> o = offset.map(this::intern);
+        return (Ast.Expression.Access) intern(new Key("access", name, o.map(List::of).orElse(List.of())),
+                () -> new Ast.Expression.Access(o, name));
+    }
+
+    public Ast.Expression.Function function(String name, List<Ast.Expression> arguments) {
+        List<Ast.Expression> args = internAll(arguments);
+        return (Ast.Expression.Function) intern(new Key("function", name, args),
+                () -> new Ast.Expression.Function(name, args));
+    }
+
+    public Ast.Expression.PlcList list(List<Ast.Expression> values) {
+        List<Ast.Expression> vals = internAll(values);
+        return (Ast.Expression.PlcList) intern(new Key("list", null, vals),
+                () -> new Ast.Expression.PlcList(vals));
+    }
+
+    /**
+     * Returns the canonical node for an existing expression tree, interning
+     * its subexpressions bottom-up. Nodes already owned by this interner are
+     * returned as is.
+     */
+    public Ast.Expression intern(Ast.Expression ast) {
+        if (hashes.containsKey(ast)) {
+            return ast;
+        } else if (ast instanceof Ast.Expression.Literal) {
+            return literal(((Ast.Expression.Literal) ast).getLiteral());
+        } else if (ast instanceof Ast.Expression.Group) {
+            return group(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            return binary(binary.getOperator(), binary.getLeft(), binary.getRight());
+        } else if (ast instanceof Ast.Expression.Access) {
+            return access(((Ast.Expression.Access) ast).getOffset(), ((Ast.Expression.Access) ast).getName());
+        } else if (ast instanceof Ast.Expression.Function) {
+            return function(((Ast.Expression.Function) ast).getName(), ((Ast.Expression.Function) ast).getArguments());
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            return list(((Ast.Expression.PlcList) ast).getValues());
+        }
+        throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
+    }
+
+    /**
+     * Returns the cached structural hash of an interned expression.
+     */
+    public int hash(Ast.Expression ast) {
+        Integer hash = hashes.get(ast);
+        if (hash == null) {
+            throw new IllegalArgumentException("The expression was not created by this interner.");
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of nodes requested from this interner, including
+     * those answered with an existing node.
+     */
+    public int getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * Returns the number of distinct nodes allocated. The difference with
+     * {@link #getRequestCount()} is the number of nodes saved by sharing.
+     */
+    public int getNodeCount() {
+        return table.size();
+    }
+
+    private List<Ast.Expression> internAll(List<Ast.Expression> expressions) {
+        List<Ast.Expression> interned = new ArrayList<>(expressions.size());
+        for (Ast.Expression expression : expressions) {
+            interned.add(intern(expression));
+        }
+        return interned;
+    }
+
+    private Ast.Expression intern(Key key, Supplier<Ast.Expression> factory) {
+        requests++;
+        Ast.Expression node = table.get(key);
+        if (node == null) {
+            node = factory.get();
+            table.put(key, node);
+            hashes.put(node, key.hash);
+        }
+        return node;
+    }
+
+    /**
+     * A node's kind, payload (literal, operator or name) and canonical
+     * children. Children are compared by identity, which is structural
+     * equality for interned nodes.
+     */
+    private final class Key {
+
+        private final String kind;
+        private final Object payload;
+        private final List<Ast.Expression> children;
+        private final int hash;
+
+        private Key(String kind, Object payload, List<Ast.Expression> children) {
+            this.kind = kind;
+            this.payload = payload;
+            this.children = children;
+            int hash = Objects.hash(kind, payload);
+            for (Ast.Expression child : children) {
+                hash = 31 * hash + hashes.get(child);
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (hash != other.hash || !kind.equals(other.kind) || children.size() != other.children.size()
+                    || !Objects.equals(payload, other.payload)) {
+                return false;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) != other.children.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,571 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An arena encoding of an {@link Ast.Source}. Instead of one object per node,
+ * every node is a row in a set of parallel {@code int[]} columns:
+ *
+ * - {@code kinds}, the node kind (one of the constants below)
+ * - {@code a}, {@code b}, {@code c}, three operand slots whose meaning
+ *   depends on the kind (usually indices into the constant pool)
+ * - {@code first}/{@code count}, a range in the shared {@code children} array
+ *
+ * Names, operators and literal values are stored once in a side constant
+ * pool. Nodes are laid out in pre-order, so walking a subtree reads the
+ * columns front to back.
+ *
+ * Operand layout by kind ({@code -1} means absent):
+ *
+ * - SOURCE: a = number of globals; children = globals, then functions
+ * - GLOBAL: a = name, b = type name, c = mutable (0/1); children = [value]
+ * - FUNCTION: a = name, b = return type name, c = number of parameters;
+ *   children = PARAMETER nodes, then statements
+ * - PARAMETER: a = name, b = type name
+ * - DECLARATION: a = name, b = type name; children = [value]
+ * - IF: a = number of then statements; children = condition, then, else
+ * - CASE: a = 1 if the case has a value; children = [value], statements
+ * - LITERAL: a = literal (-1 for {@code NIL})
+ * - BINARY: a = operator; children = left, right
+ * - ACCESS: a = name, b = 1 if there is an offset; children = [offset]
+ * - CALL: a = name; children = arguments
+ * - all other kinds only use their children.
+ */
+public final class FlatAst {
+
+    public static final int SOURCE = 0;
+    public static final int GLOBAL = 1;
+    public static final int FUNCTION = 2;
+    public static final int PARAMETER = 3;
+    public static final int EXPRESSION_STATEMENT = 4;
+    public static final int DECLARATION = 5;
+    public static final int ASSIGNMENT = 6;
+    public static final int IF = 7;
+    public static final int SWITCH = 8;
+    public static final int CASE = 9;
+    public static final int WHILE = 10;
+    public static final int RETURN = 11;
+    public static final int LITERAL = 12;
+    public static final int GROUP = 13;
+    public static final int BINARY = 14;
+    public static final int ACCESS = 15;
+    public static final int CALL = 16;
+    public static final int LIST = 17;
+
+    private final int size;
+    private final int[] kinds;
+    private final int[] a;
+    private final int[] b;
+    private final int[] c;
+    private final int[] first;
+    private final int[] count;
+    private final int[] children;
+    private final Object[] constants;
+
+    private FlatAst(Encoder encoder) {
+        this(Arrays.copyOf(encoder.kinds, encoder.size),
+                Arrays.copyOf(encoder.a, encoder.size),
+                Arrays.copyOf(encoder.b, encoder.size),
+                Arrays.copyOf(encoder.c, encoder.size),
+                Arrays.copyOf(encoder.first, encoder.size),
+                Arrays.copyOf(encoder.count, encoder.size),
+                Arrays.copyOf(encoder.children, encoder.childrenSize),
+                encoder.constants.toArray());
+    }
+
+    /**
+     * Wraps already encoded columns, as read back by {@link AstSerializer}.
+     */
+    FlatAst(int[] kinds, int[] a, int[] b, int[] c, int[] first, int[] count, int[] children, Object[] constants) {
+        this.size = kinds.length;
+        this.kinds = kinds;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.first = first;
+        this.count = count;
+        this.children = children;
+        this.constants = constants;
+    }
+
+    /**
+     * Encodes the given source into a new arena. The AST is not modified.
+     */
+    public static FlatAst encode(Ast.Source source) {
+        Encoder encoder = new Encoder();
+        encoder.visit(source);
+        return new FlatAst(encoder);
+    }
+
+    /**
+     * Returns the root ({@code SOURCE}) node, which is always node 0.
+     */
+    public int getRoot() {
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getKind(int node) {
+        return kinds[node];
+    }
+
+    public int getChildCount(int node) {
+        return count[node];
+    }
+
+    public int getChild(int node, int index) {
+        if (index < 0 || index >= count[node]) {
+            throw new IndexOutOfBoundsException("Child " + index + " of node " + node + " with " + count[node] + " children.");
+        }
+        return children[first[node] + index];
+    }
+
+    public int getA(int node) {
+        return a[node];
+    }
+
+    public int getB(int node) {
+        return b[node];
+    }
+
+    public int getC(int node) {
+        return c[node];
+    }
+
+    /**
+     * Returns the constant pool entry at the given index, or {@code null} for
+     * an absent ({@code -1}) index.
+     */
+    public Object getConstant(int index) {
+        return index < 0 ? null : constants[index];
+    }
+
+    public String getString(int index) {
+        return (String) getConstant(index);
+    }
+
+    public int getConstantCount() {
+        return constants.length;
+    }
+
+    int[][] columns() {
+        return new int[][] {kinds, a, b, c, first, count};
+    }
+
+    int[] children() {
+        return children;
+    }
+
+    /**
+     * Dispatches to the visitor method for the kind of {@code node} with a
+     * single array read and a table switch.
+     */
+    public <T> T accept(int node, Visitor<T> visitor) {
+        switch (kinds[node]) {
+            case SOURCE: return visitor.visitSource(this, node);
+            case GLOBAL: return visitor.visitGlobal(this, node);
+            case FUNCTION: return visitor.visitFunction(this, node);
+            case PARAMETER: return visitor.visitParameter(this, node);
+            case EXPRESSION_STATEMENT: return visitor.visitExpressionStatement(this, node);
+            case DECLARATION: return visitor.visitDeclaration(this, node);
+            case ASSIGNMENT: return visitor.visitAssignment(this, node);
+            case IF: return visitor.visitIf(this, node);
+            case SWITCH: return visitor.visitSwitch(this, node);
+            case CASE: return visitor.visitCase(this, node);
+            case WHILE: return visitor.visitWhile(this, node);
+            case RETURN: return visitor.visitReturn(this, node);
+            case LITERAL: return visitor.visitLiteral(this, node);
+            case GROUP: return visitor.visitGroup(this, node);
+            case BINARY: return visitor.visitBinary(this, node);
+            case ACCESS: return visitor.visitAccess(this, node);
+            case CALL: return visitor.visitCall(this, node);
+            case LIST: return visitor.visitList(this, node);
+            default: throw new AssertionError("Unknown node kind " + kinds[node] + ".");
+        }
+    }
+
+    /**
+     * Rebuilds the pointer-based {@link Ast.Source} from this arena. The
+     * result compares equal to the source that was encoded.
+     */
+    public Ast.Source decode() {
+        return (Ast.Source) accept(getRoot(), new Decoder());
+    }
+
+    public interface Visitor<T> {
+
+        T visitSource(FlatAst ast, int node);
+
+        T visitGlobal(FlatAst ast, int node);
+
+        T visitFunction(FlatAst ast, int node);
+
+        T visitParameter(FlatAst ast, int node);
+
+        T visitExpressionStatement(FlatAst ast, int node);
+
+        T visitDeclaration(FlatAst ast, int node);
+
+        T visitAssignment(FlatAst ast, int node);
+
+        T visitIf(FlatAst ast, int node);
+
+        T visitSwitch(FlatAst ast, int node);
+
+        T visitCase(FlatAst ast, int node);
+
+        T visitWhile(FlatAst ast, int node);
+
+        T visitReturn(FlatAst ast, int node);
+
+        T visitLiteral(FlatAst ast, int node);
+
+        T visitGroup(FlatAst ast, int node);
+
+        T visitBinary(FlatAst ast, int node);
+
+        T visitAccess(FlatAst ast, int node);
+
+        T visitCall(FlatAst ast, int node);
+
+        T visitList(FlatAst ast, int node);
+
+    }
+
+    /**
+     * Walks the pointer-based AST and appends rows to growable columns.
+     */
+    private static final class Encoder implements Ast.Visitor<Integer> {
+
+        private int size = 0;
+        private int[] kinds = new int[64];
+        private int[] a = new int[64];
+        private int[] b = new int[64];
+        private int[] c = new int[64];
+        private int[] first = new int[64];
+        private int[] count = new int[64];
+        private int childrenSize = 0;
+        private int[] children = new int[64];
+        private final List<Object> constants = new ArrayList<>();
+        private final Map<Object, Integer> pool = new HashMap<>();
+
+        private int constant(Object value) {
+            if (value == null) {
+                return -1;
+            }
+            return pool.computeIfAbsent(value, v -> {
+                constants.add(v);
+                return constants.size() - 1;
+            });
+        }
+
+        private int node(int kind, int a, int b, int c) {
+            if (size == kinds.length) {
+                int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                this.a = Arrays.copyOf(this.a, capacity);
+                this.b = Arrays.copyOf(this.b, capacity);
+                this.c = Arrays.copyOf(this.c, capacity);
+                first = Arrays.copyOf(first, capacity);
+                count = Arrays.copyOf(count, capacity);
+            }
+            kinds[size] = kind;
+            this.a[size] = a;
+            this.b[size] = b;
+            this.c[size] = c;
+            return size++;
+        }
+
+        /**
+         * Encodes the children (already visited, in order) of {@code node}
+         * as one contiguous range.
+         */
+        private int children(int node, List<Integer> nodes) {
+            if (childrenSize + nodes.size() > children.length) {
+                children = Arrays.copyOf(children, Math.max(children.length * 2, childrenSize + nodes.size()));
+            }
+            first[node] = childrenSize;
+            count[node] = nodes.size();
+            for (int child : nodes) {
+                children[childrenSize++] = child;
+            }
+            return node;
+        }
+
+        private List<Integer> visitAll(List<? extends Ast> asts) {
+            List<Integer> nodes = new ArrayList<>(asts.size());
+            for (Ast ast : asts) {
+                nodes.add(visit(ast));
+            }
+            return nodes;
+        }
+
+        @Override
+        public Integer visit(Ast.Source ast) {
+            int node = node(SOURCE, ast.getGlobals().size(), -1, -1);
+            List<Integer> nodes = visitAll(ast.getGlobals());
+            nodes.addAll(visitAll(ast.getFunctions()));
+            return children(node, nodes);
+        }
+
+        @Override
+        public Integer visit(Ast.Global ast) {
+            int node = node(GLOBAL, constant(ast.getName()), constant(ast.getTypeName()), ast.getMutable() ? 1 : 0);
+            List<Integer> nodes = new ArrayList<>();
+            ast.getValue().ifPresent(value -> nodes.add(visit(value)));
+            return children(node, nodes);
+        }
+
+        @Override
+        public Integer visit(Ast.Function ast) {
+            int node = node(FUNCTION, constant(ast.getName()), constant(ast.getReturnTypeName().orElse(null)), ast.getParameters().size());
+            List<Integer> nodes = new ArrayList<>();
+            for (int i = 0; i < ast.getParameters().size(); i++) {
+                int parameter = node(PARAMETER, constant(ast.getParameters().get(i)), constant(ast.getParameterTypeNames().get(i)), -1);
+                nodes.add(children(parameter, List.of()));
+            }
+            nodes.addAll(visitAll(ast.getStatements()));
+            return children(node, nodes);
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Expression ast) {
+            int node = node(EXPRESSION_STATEMENT, -1, -1, -1);
+            return children(node, List.of(visit(ast.getExpression())));
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Declaration ast) {
+            int node = node(DECLARATION, constant(ast.getName()), constant(ast.getTypeName().orElse(null)), -1);
+            List<Integer> nodes = new ArrayList<>();
+            ast.getValue().ifPresent(value -> nodes.add(visit(value)));
+            return children(node, nodes);
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Assignment ast) {
+            int node = node(ASSIGNMENT, -1, -1, -1);
+            int receiver = visit(ast.getReceiver());
+            return children(node, List.of(receiver, visit(ast.getValue())));
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.If ast) {
+            int node = node(IF, ast.getThenStatements().size(), -1, -1);
+            List<Integer> nodes = new ArrayList<>();
+            nodes.add(visit(ast.getCondition()));
+            nodes.addAll(visitAll(ast.getThenStatements()));
+            nodes.addAll(visitAll(ast.getElseStatements()));
+            return children(node, nodes);
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Switch ast) {
+            int node = node(SWITCH, -1, -1, -1);
+            List<Integer> nodes = new ArrayList<>();
+            nodes.add(visit(ast.getCondition()));
+            nodes.addAll(visitAll(ast.getCases()));
+            return children(node, nodes);
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Case ast) {
+            int node = node(CASE, ast.getValue().isPresent() ? 1 : 0, -1, -1);
+            List<Integer> nodes = new ArrayList<>();
+            ast.getValue().ifPresent(value -> nodes.add(visit(value)));
+            nodes.addAll(visitAll(ast.getStatements()));
+            return children(node, nodes);
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.While ast) {
+            int node = node(WHILE, -1, -1, -1);
+            List<Integer> nodes = new ArrayList<>();
+            nodes.add(visit(ast.getCondition()));
+            nodes.addAll(visitAll(ast.getStatements()));
+            return children(node, nodes);
+        }
+
+        @Override
+        public Integer visit(Ast.Statement.Return ast) {
+            int node = node(RETURN, -1, -1, -1);
+            return children(node, List.of(visit(ast.getValue())));
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Literal ast) {
+            return children(node(LITERAL, constant(ast.getLiteral()), -1, -1), List.of());
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Group ast) {
+            int node = node(GROUP, -1, -1, -1);
+            return children(node, List.of(visit(ast.getExpression())));
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Binary ast) {
+            int node = node(BINARY, constant(ast.getOperator()), -1, -1);
+            int left = visit(ast.getLeft());
+            return children(node, List.of(left, visit(ast.getRight())));
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Access ast) {
+            int node = node(ACCESS, constant(ast.getName()), ast.getOffset().isPresent() ? 1 : 0, -1);
+            List<Integer> nodes = new ArrayList<>();
+            ast.getOffset().ifPresent(offset -> nodes.add(visit(offset)));
+            return children(node, nodes);
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.Function ast) {
+            int node = node(CALL, constant(ast.getName()), -1, -1);
+            return children(node, visitAll(ast.getArguments()));
+        }
+
+        @Override
+        public Integer visit(Ast.Expression.PlcList ast) {
+            int node = node(LIST, -1, -1, -1);
+            return children(node, visitAll(ast.getValues()));
+        }
+
+    }
+
+    /**
+     * Rebuilds {@link Ast} nodes from the arena.
+     */
+    private static final class Decoder implements Visitor<Ast> {
+
+        @SuppressWarnings("unchecked")
+        private <T extends Ast> List<T> range(FlatAst ast, int node, int from, int to) {
+            List<T> nodes = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                nodes.add((T) ast.accept(ast.getChild(node, i), this));
+            }
+            return nodes;
+        }
+
+        private Ast.Expression expression(FlatAst ast, int node, int index) {
+            return (Ast.Expression) ast.accept(ast.getChild(node, index), this);
+        }
+
+        private Optional<Ast.Expression> optional(FlatAst ast, int node, boolean present) {
+            return present ? Optional.of(expression(ast, node, 0)) : Optional.empty();
+        }
+
+        @Override
+        public Ast visitSource(FlatAst ast, int node) {
+            int globals = ast.getA(node);
+            return new Ast.Source(range(ast, node, 0, globals), range(ast, node, globals, ast.getChildCount(node)));
+        }
+
+        @Override
+        public Ast visitGlobal(FlatAst ast, int node) {
+            return new Ast.Global(ast.getString(ast.getA(node)), ast.getString(ast.getB(node)), ast.getC(node) == 1,
+                    optional(ast, node, ast.getChildCount(node) == 1));
+        }
+
+        @Override
+        public Ast visitFunction(FlatAst ast, int node) {
+            int parameterCount = ast.getC(node);
+            List<String> parameters = new ArrayList<>();
+            List<String> parameterTypeNames = new ArrayList<>();
+            for (int i = 0; i < parameterCount; i++) {
+                int parameter = ast.getChild(node, i);
+                parameters.add(ast.getString(ast.getA(parameter)));
+                parameterTypeNames.add(ast.getString(ast.getB(parameter)));
+            }
+            return new Ast.Function(ast.getString(ast.getA(node)), parameters, parameterTypeNames,
+                    Optional.ofNullable(ast.getString(ast.getB(node))), range(ast, node, parameterCount, ast.getChildCount(node)));
+        }
+
+        @Override
+        public Ast visitParameter(FlatAst ast, int node) {
+            throw new AssertionError("Parameters are decoded by their function.");
+        }
+
+        @Override
+        public Ast visitExpressionStatement(FlatAst ast, int node) {
+            return new Ast.Statement.Expression(expression(ast, node, 0));
+        }
+
+        @Override
+        public Ast visitDeclaration(FlatAst ast, int node) {
+            return new Ast.Statement.Declaration(ast.getString(ast.getA(node)), Optional.ofNullable(ast.getString(ast.getB(node))),
+                    optional(ast, node, ast.getChildCount(node) == 1));
+        }
+
+        @Override
+        public Ast visitAssignment(FlatAst ast, int node) {
+            return new Ast.Statement.Assignment(expression(ast, node, 0), expression(ast, node, 1));
+        }
+
+        @Override
+        public Ast visitIf(FlatAst ast, int node) {
+            int thenEnd = 1 + ast.getA(node);
+            return new Ast.Statement.If(expression(ast, node, 0), range(ast, node, 1, thenEnd), range(ast, node, thenEnd, ast.getChildCount(node)));
+        }
+
+        @Override
+        public Ast visitSwitch(FlatAst ast, int node) {
+            return new Ast.Statement.Switch(expression(ast, node, 0), range(ast, node, 1, ast.getChildCount(node)));
+        }
+
+        @Override
+        public Ast visitCase(FlatAst ast, int node) {
+            int start = ast.getA(node);
+            return new Ast.Statement.Case(optional(ast, node, start == 1), range(ast, node, start, ast.getChildCount(node)));
+        }
+
+        @Override
+        public Ast visitWhile(FlatAst ast, int node) {
+            return new Ast.Statement.While(expression(ast, node, 0), range(ast, node, 1, ast.getChildCount(node)));
+        }
+
+        @Override
+        public Ast visitReturn(FlatAst ast, int node) {
+            return new Ast.Statement.Return(expression(ast, node, 0));
+        }
+
+        @Override
+        public Ast visitLiteral(FlatAst ast, int node) {
+            return new Ast.Expression.Literal(ast.getConstant(ast.getA(node)));
+        }
+
+        @Override
+        public Ast visitGroup(FlatAst ast, int node) {
+            return new Ast.Expression.Group(expression(ast, node, 0));
+        }
+
+        @Override
+        public Ast visitBinary(FlatAst ast, int node) {
+            return new Ast.Expression.Binary(ast.getString(ast.getA(node)), expression(ast, node, 0), expression(ast, node, 1));
+        }
+
+        @Override
+        public Ast visitAccess(FlatAst ast, int node) {
+            return new Ast.Expression.Access(optional(ast, node, ast.getB(node) == 1), ast.getString(ast.getA(node)));
+        }
+
+        @Override
+        public Ast visitCall(FlatAst ast, int node) {
+            return new Ast.Expression.Function(ast.getString(ast.getA(node)), range(ast, node, 0, ast.getChildCount(node)));
+        }
+
+        @Override
+        public Ast visitList(FlatAst ast, int node) {
+            return new Ast.Expression.PlcList(range(ast, node, 0, ast.getChildCount(node)));
+        }
+
+    }
+
+}
@@ -0,0 +1,184 @@
+package plc.project;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The variables and list elements that an expression reads or a statement
+ * may write, used by the passes that move or reuse expressions. Lists are
+ * not told apart, as a local may alias any of them.
+ */
+final class Footprint {
+
+    final Set<Environment.Variable> locals = Collections.newSetFromMap(new IdentityHashMap<>());
+    final Set<Environment.Variable> globals = Collections.newSetFromMap(new IdentityHashMap<>());
+    boolean allGlobals;
+    boolean elements;
+
+    /**
+     * Returns whether writing this footprint may change what {@code reads}
+     * reads.
+     */
+    boolean overlaps(Footprint reads) {
+        return reads.locals.stream().anyMatch(locals::contains)
+                || reads.globals.stream().anyMatch(globals::contains)
+                || (allGlobals && !reads.globals.isEmpty())
+                || (elements && reads.elements);
+    }
+
+    /**
+     * Returns what a statement or expression may write, including the
+     * effects of the functions it calls. A declaration writes the variable
+     * it declares.
+     */
+    static Footprint writes(Ast ast, Analysis analysis) {
+        Footprint writes = new Footprint();
+        writes.addWrites(ast, Analysis.of(analysis));
+        return writes;
+    }
+
+    /**
+     * Returns what an expression reads, or {@code null} if it calls a
+     * function that does more than {@link #readsOnly(Environment.Function)
+     * read}.
+     */
+    static Footprint reads(Ast.Expression ast, Analysis analysis) {
+        Footprint reads = new Footprint();
+        return reads.addReads(ast, Analysis.of(analysis)) ? reads : null;
+    }
+
+    /**
+     * Returns whether calling a function only reads: it is {@link
+     * Environment.Function#isPure() pure} or its only effect is reading list
+     * elements, which {@link #addCall(Environment.Function)} records.
+     */
+    static boolean readsOnly(Environment.Function function) {
+        return function.getEffects().stream().allMatch(effect -> effect == Environment.Effect.READS_LISTS);
+    }
+
+    /**
+     * Records the reads of a call to a function that {@link
+     * #readsOnly(Environment.Function) only reads}.
+     */
+    void addCall(Environment.Function function) {
+        elements |= function.getEffects().contains(Environment.Effect.READS_LISTS);
+    }
+
+    /**
+     * Records a read of the variable named by an access, ignoring any offset.
+     */
+    void read(Ast.Expression.Access ast, Analysis analysis) {
+        (analysis.getAddress(ast).isGlobal() ? globals : locals).add(analysis.getVariable(ast));
+        elements |= ast.getOffset().isPresent();
+    }
+
+    /**
+     * Returns whether evaluating a pure expression can throw: division and
+     * exponentiation can, as can any operator on a value that may be NIL,
+     * indexing and calls.
+     */
+    static boolean mayFail(Ast.Expression ast, NilAnalysis nils) {
+        if (ast instanceof Ast.Expression.Group) {
+            return mayFail(((Ast.Expression.Group) ast).getExpression(), nils);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            return operatorMayFail(binary, nils) || mayFail(binary.getLeft(), nils) || mayFail(binary.getRight(), nils);
+        } else if (ast instanceof Ast.Expression.Access) {
+            return ((Ast.Expression.Access) ast).getOffset().isPresent();
+        }
+        return ast instanceof Ast.Expression.Function;
+    }
+
+    /**
+     * Returns whether applying the operator of a binary expression can throw,
+     * once its operands have been evaluated.
+     */
+    static boolean operatorMayFail(Ast.Expression.Binary ast, NilAnalysis nils) {
+        return ast.getOperator().equals("/") || ast.getOperator().equals("^")
+                || nils.mayBeNil(ast.getLeft()) || nils.mayBeNil(ast.getRight());
+    }
+
+    private boolean addReads(Ast.Expression ast, Analysis analysis) {
+        if (ast instanceof Ast.Expression.Group) {
+            return addReads(((Ast.Expression.Group) ast).getExpression(), analysis);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            return addReads(((Ast.Expression.Binary) ast).getLeft(), analysis)
+                    && addReads(((Ast.Expression.Binary) ast).getRight(), analysis);
+        } else if (ast instanceof Ast.Expression.Access) {
+            read((Ast.Expression.Access) ast, analysis);
+            return ((Ast.Expression.Access) ast).getOffset().map(offset -> addReads(offset, analysis)).orElse(true);
+        } else if (ast instanceof Ast.Expression.Function) {
+            Ast.Expression.Function call = (Ast.Expression.Function) ast;
+            Environment.Function function = analysis.getFunction(call);
+            if (!readsOnly(function)) {
+                return false;
+            }
+            addCall(function);
+            return call.getArguments().stream().allMatch(argument -> addReads(argument, analysis));
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            return ((Ast.Expression.PlcList) ast).getValues().stream().allMatch(value -> addReads(value, analysis));
+        }
+        return true;
+    }
+
+    private void addWrites(Ast ast, Analysis analysis) {
+        if (ast instanceof Ast.Statement.Expression) {
+            addWrites(((Ast.Statement.Expression) ast).getExpression(), analysis);
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) ast;
+            declaration.getValue().ifPresent(value -> addWrites(value, analysis));
+            locals.add(analysis.getVariable(declaration));
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) ast;
+            Ast.Expression.Access receiver = (Ast.Expression.Access) assignment.getReceiver();
+            if (receiver.getOffset().isPresent()) {
+                elements = true;
+                addWrites(receiver.getOffset().get(), analysis);
+            } else {
+                (analysis.getAddress(receiver).isGlobal() ? globals : locals).add(analysis.getVariable(receiver));
+            }
+            addWrites(assignment.getValue(), analysis);
+        } else if (ast instanceof Ast.Statement.If) {
+            Ast.Statement.If branch = (Ast.Statement.If) ast;
+            addWrites(branch.getCondition(), analysis);
+            branch.getThenStatements().forEach(statement -> addWrites(statement, analysis));
+            branch.getElseStatements().forEach(statement -> addWrites(statement, analysis));
+        } else if (ast instanceof Ast.Statement.Switch) {
+            Ast.Statement.Switch branch = (Ast.Statement.Switch) ast;
+            addWrites(branch.getCondition(), analysis);
+            for (Ast.Statement.Case caseStatement : branch.getCases()) {
+                caseStatement.getValue().ifPresent(value -> addWrites(value, analysis));
+                caseStatement.getStatements().forEach(statement -> addWrites(statement, analysis));
+            }
+        } else if (ast instanceof Ast.Statement.While) {
+            Ast.Statement.While loop = (Ast.Statement.While) ast;
+            addWrites(loop.getCondition(), analysis);
+            loop.getStatements().forEach(statement -> addWrites(statement, analysis));
+        } else if (ast instanceof Ast.Statement.Return) {
+            addWrites(((Ast.Statement.Return) ast).getValue(), analysis);
+        } else if (ast instanceof Ast.Expression.Group) {
+            addWrites(((Ast.Expression.Group) ast).getExpression(), analysis);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            addWrites(((Ast.Expression.Binary) ast).getLeft(), analysis);
+            addWrites(((Ast.Expression.Binary) ast).getRight(), analysis);
+        } else if (ast instanceof Ast.Expression.Access) {
+            ((Ast.Expression.Access) ast).getOffset().ifPresent(offset -> addWrites(offset, analysis));
+        } else if (ast instanceof Ast.Expression.Function) {
+            Ast.Expression.Function call = (Ast.Expression.Function) ast;
+            call.getArguments().forEach(argument -> addWrites(argument, analysis));
+            addEffects(analysis.getFunction(call).getEffects());
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            ((Ast.Expression.PlcList) ast).getValues().forEach(value -> addWrites(value, analysis));
+        }
+    }
+
+    /**
+     * Records the writes of a call with the given effects.
+     */
+    void addEffects(Set<Environment.Effect> effects) {
+        allGlobals |= effects.contains(Environment.Effect.WRITES_GLOBALS);
+        elements |= effects.contains(Environment.Effect.MUTATES_LISTS);
+    }
+
+}
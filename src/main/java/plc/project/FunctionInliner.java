@@ -0,0 +1,323 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Replaces calls to small, non-recursive functions of the source with their
+ * bodies. The language has no expression that contains statements, so only
+ * calls that are a whole statement are inlined:
+ *
+ * <pre>
+ * f(args);    LET x = f(args);    x = f(args);    RETURN f(args);
+ * </pre>
+ *
+ * The call becomes a declaration of each parameter, {@code LET $inl0_n:
+ * Integer = args;}, in the order the arguments were evaluated, followed by
+ * the body with its parameters and locals renamed and its final {@code
+ * RETURN e} turned into the declaration, assignment or return of the call
+ * site. A function is only inlined if that is its only {@code RETURN}, so
+ * no control flow has to be rewritten.
+ *
+ * The cost of a function is the number of nodes in its body plus one per
+ * parameter; functions above the size budget are not inlined. Functions are
+ * processed callees first, so a body may already contain inlined calls; the
+ * depth budget bounds how many levels of calls one inlined body stands for.
+ * A function that reads a global a caller declares a local of the same name
+ * is not inlined into that caller.
+ */
+public final class FunctionInliner extends AstRewriter {
+
+    public static final int DEFAULT_SIZE = 24;
+    public static final int DEFAULT_DEPTH = 2;
+
+    private static final String PREFIX = "$inl";
+
+    private final Analysis analysis;
+    private final int maxSize;
+    private final int maxDepth;
+    private final Map<Environment.Function, Ast.Function> inlined = new IdentityHashMap<>();
+    private final Map<Environment.Function, Integer> depths = new IdentityHashMap<>();
+    private CallGraph graph;
+    private Set<String> globals;
+    private Set<String> locals;
+    private int depth;
+    private int sites = 0;
+
+    /**
+     * Uses the default budgets.
+     */
+    public FunctionInliner() {
+        this(null);
+    }
+
+    public FunctionInliner(Analysis analysis) {
+        this(analysis, DEFAULT_SIZE, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Inlines functions of at most {@code maxSize} cost, standing for at
+     * most {@code maxDepth} levels of calls.
+     */
+    public FunctionInliner(Analysis analysis, int maxSize, int maxDepth) {
+        this.analysis = Analysis.of(analysis);
+        this.maxSize = maxSize;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Returns the number of calls replaced by a body.
+     */
+    public int getInlinedCount() {
+        return sites;
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        graph = CallGraph.build(ast, analysis);
+        globals = new HashSet<>();
+        ast.getGlobals().forEach(global -> globals.add(global.getName()));
+        Map<Environment.Function, Ast.Function> functions = new IdentityHashMap<>();
+        ast.getFunctions().forEach(function -> functions.put(analysis.getFunction(function), function));
+        for (List<Environment.Function> component : graph.getComponents()) {
+            for (Environment.Function function : component) {
+                if (functions.containsKey(function)) {
+                    inlined.put(function, rewrite(functions.get(function)));
+                }
+            }
+        }
+        List<Ast.Function> result = new ArrayList<>();
+        boolean changed = false;
+        for (Ast.Function function : ast.getFunctions()) {
+            Ast.Function rewritten = inlined.get(analysis.getFunction(function));
+            changed |= rewritten != function;
+            result.add(rewritten);
+        }
+        return changed ? new Ast.Source(ast.getGlobals(), result) : ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Function ast) {
+        locals = new HashSet<>(ast.getParameters());
+        locals.addAll(new Scan(ast.getStatements()).declared);
+        depth = 0;
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        depths.put(analysis.getFunction(ast), depth);
+        if (statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Function(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.If ast) {
+        List<Ast.Statement> thenStatements = statements(ast.getThenStatements());
+        List<Ast.Statement> elseStatements = statements(ast.getElseStatements());
+        if (thenStatements == ast.getThenStatements() && elseStatements == ast.getElseStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.If(ast.getCondition(), thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Case ast) {
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.Case(ast.getValue(), statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.While ast) {
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.While(ast.getCondition(), statements);
+    }
+
+    /**
+     * Rewrites a block, replacing each inlinable call statement with the
+     * statements of the body.
+     */
+    private List<Ast.Statement> statements(List<Ast.Statement> statements) {
+        List<Ast.Statement> result = new ArrayList<>();
+        boolean changed = false;
+        for (Ast.Statement statement : statements) {
+            List<Ast.Statement> body = inline(statement);
+            if (body != null) {
+                result.addAll(body);
+                changed = true;
+            } else {
+                Ast.Statement rewritten = rewrite(statement);
+                changed |= rewritten != statement;
+                result.add(rewritten);
+            }
+        }
+        return changed ? result : statements;
+    }
+
+    /**
+     * Returns the statements replacing a call statement, or {@code null} if
+     * it is not one or the callee is not inlined.
+     */
+    private List<Ast.Statement> inline(Ast.Statement ast) {
+        Ast.Expression value = null;
+        if (ast instanceof Ast.Statement.Expression) {
+            value = ((Ast.Statement.Expression) ast).getExpression();
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            value = ((Ast.Statement.Declaration) ast).getValue().orElse(null);
+        } else if (ast instanceof Ast.Statement.Assignment
+                && ((Ast.Expression.Access) ((Ast.Statement.Assignment) ast).getReceiver()).getOffset().isEmpty()) {
+            value = ((Ast.Statement.Assignment) ast).getValue();
+        } else if (ast instanceof Ast.Statement.Return) {
+            value = ((Ast.Statement.Return) ast).getValue();
+        }
+        if (!(value instanceof Ast.Expression.Function)) {
+            return null;
+        }
+        Ast.Expression.Function call = (Ast.Expression.Function) value;
+        Environment.Function function = analysis.getFunction(call);
+        Ast.Function callee = inlined.get(function);
+        if (callee == null || graph.isRecursive(function) || depths.get(function) + 1 > maxDepth) {
+            return null;
+        }
+
+        List<Ast.Statement> body = callee.getStatements();
+        Ast.Expression result = null;
+        if (!body.isEmpty() && body.get(body.size() - 1) instanceof Ast.Statement.Return) {
+            result = ((Ast.Statement.Return) body.get(body.size() - 1)).getValue();
+            body = body.subList(0, body.size() - 1);
+        }
+        Scan scan = new Scan(callee.getStatements());
+        Set<String> names = new HashSet<>(callee.getParameters());
+        names.addAll(scan.declared);
+        if ((result == null && !(ast instanceof Ast.Statement.Expression))
+                || scan.returns != (result == null ? 0 : 1)
+                || scan.size + callee.getParameters().size() > maxSize
+                || names.stream().anyMatch(globals::contains)
+                || scan.accessed.stream().anyMatch(name -> !names.contains(name) && locals.contains(name))) {
+            return null;
+        }
+
+        String prefix = PREFIX + sites++;
+        Map<String, String> renames = new HashMap<>();
+        names.forEach(name -> renames.put(name, prefix + "_" + name));
+        Renamer renamer = new Renamer(renames);
+        List<Ast.Statement> statements = new ArrayList<>();
+        for (int i = 0; i < callee.getParameters().size(); i++) {
+            statements.add(new Ast.Statement.Declaration(renames.get(callee.getParameters().get(i)),
+                    Optional.of(callee.getParameterTypeNames().get(i)), Optional.of(call.getArguments().get(i))));
+        }
+        body.forEach(statement -> statements.add(renamer.rewrite(statement)));
+        if (result != null) {
+            result = renamer.rewrite(result);
+            if (ast instanceof Ast.Statement.Expression) {
+                statements.add(new Ast.Statement.Declaration(prefix, callee.getReturnTypeName(), Optional.of(result)));
+            } else if (ast instanceof Ast.Statement.Declaration) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) ast;
+                statements.add(new Ast.Statement.Declaration(declaration.getName(),
+                        declaration.getTypeName().isPresent() ? declaration.getTypeName() : callee.getReturnTypeName(), Optional.of(result)));
+            } else if (ast instanceof Ast.Statement.Assignment) {
+                statements.add(new Ast.Statement.Assignment(((Ast.Statement.Assignment) ast).getReceiver(), result));
+            } else {
+                statements.add(new Ast.Statement.Return(result));
+            }
+        }
+        depth = Math.max(depth, depths.get(function) + 1);
+        return statements;
+    }
+
+    /**
+     * Counts the nodes of a body and collects the names it declares and
+     * accesses.
+     */
+    private static final class Scan extends AstRewriter {
+
+        private final Set<String> declared = new HashSet<>();
+        private final Set<String> accessed = new HashSet<>();
+        private int size = 0;
+        private int returns = 0;
+
+        private Scan(List<Ast.Statement> statements) {
+            rewrite(statements);
+        }
+
+        @Override
+        public Ast visit(Ast ast) {
+            size++;
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Statement.Declaration ast) {
+            declared.add(ast.getName());
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Statement.Return ast) {
+            returns++;
+            return super.visit(ast);
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Access ast) {
+            accessed.add(ast.getName());
+            return super.visit(ast);
+        }
+
+    }
+
+    /**
+     * Copies a body, renaming its parameters and locals. Every node is
+     * copied, so the copies can be analysed apart from the callee.
+     */
+    private static final class Renamer extends AstRewriter {
+
+        private final Map<String, String> renames;
+
+        private Renamer(Map<String, String> renames) {
+            this.renames = renames;
+        }
+
+        @Override
+        public Ast visit(Ast.Statement.Declaration ast) {
+            return new Ast.Statement.Declaration(renames.getOrDefault(ast.getName(), ast.getName()), ast.getTypeName(), rewrite(ast.getValue()));
+        }
+
+        @Override
+        public Ast visit(Ast.Statement.Case ast) {
+            return new Ast.Statement.Case(rewrite(ast.getValue()), new ArrayList<>(rewrite(ast.getStatements())));
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Literal ast) {
+            return new Ast.Expression.Literal(ast.getLiteral());
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Access ast) {
+            return new Ast.Expression.Access(rewrite(ast.getOffset()), renames.getOrDefault(ast.getName(), ast.getName()));
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Function ast) {
+            return new Ast.Expression.Function(ast.getName(), new ArrayList<>(rewrite(ast.getArguments())));
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.PlcList ast) {
+            return new Ast.Expression.PlcList(new ArrayList<>(rewrite(ast.getValues())));
+        }
+
+    }
+
+}
@@ -6,10 +6,37 @@ import java.util.List;
 public final class Generator implements Ast.Visitor<Void> {
 
     private final PrintWriter writer;
+    private final Analysis analysis;
+    private final Environment.TypeRegistry types;
+    private final boolean staticConstants;
     private int indent = 0;
 
     public Generator(PrintWriter writer) {
+        this(writer, null);
+    }
+
+    /**
+     * Generates code using the results in {@code analysis} rather than the
+     * annotations on the AST, for ASTs analysed with annotation disabled.
+     */
+    public Generator(PrintWriter writer, Analysis analysis) {
+        this(writer, analysis, Environment.getDefaultRegistry());
+    }
+
+    public Generator(PrintWriter writer, Analysis analysis, Environment.TypeRegistry types) {
+        this(writer, analysis, types, false);
+    }
+
+    /**
+     * If {@code staticConstants} is {@code true}, immutable globals with a
+     * literal initializer (such as those left by the {@link ConstantInliner})
+     * are emitted as {@code static final} constants.
+     */
+    public Generator(PrintWriter writer, Analysis analysis, Environment.TypeRegistry types, boolean staticConstants) {
         this.writer = writer;
+        this.analysis = Analysis.of(analysis);
+        this.types = types;
+        this.staticConstants = staticConstants;
     }
 
     private void print(Object... objects) {
@@ -64,13 +91,16 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Global ast) {
-        if (!ast.getMutable()) print("final ");
+        if (!ast.getMutable()) {
+            boolean literal = ast.getValue().isPresent() && ast.getValue().get() instanceof Ast.Expression.Literal;
+            print(staticConstants && literal ? "static final " : "final ");
+        }
 
-        print(ast.getVariable().getType().getJvmName());
+        print(analysis.getVariable(ast).getType().getJvmName());
         if (ast.getValue().isPresent() && ast.getValue().get() instanceof Ast.Expression.PlcList)
             print("[]");
         print(" ");
-        print(ast.getVariable().getJvmName());
+        print(analysis.getVariable(ast).getJvmName());
         if (ast.getValue().isPresent()) {
             print(" = ");
             visit(ast.getValue().get());
@@ -81,14 +111,14 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Function ast) {
-        print(ast.getFunction().getReturnType().getJvmName());
+        print(analysis.getFunction(ast).getReturnType().getJvmName());
         print(" ");
-        print(ast.getFunction().getJvmName());
+        print(analysis.getFunction(ast).getJvmName());
         print("(");
         List<String> pNames = ast.getParameters();
         List<String> pTypeNames = ast.getParameterTypeNames();
         for (int i = 0; i < pNames.size(); i++) {
-            print(Environment.getType(pTypeNames.get(i)).getJvmName(), " ", pNames.get(i));
+            print(types.getType(pTypeNames.get(i)).getJvmName(), " ", pNames.get(i));
             if (i == pNames.size()-1) continue; // gate
             print(", ");
         }
@@ -116,7 +146,7 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Statement.Declaration ast) {
-        print(ast.getVariable().getType().getJvmName(), " ");
+        print(analysis.getVariable(ast).getType().getJvmName(), " ");
         print(ast.getName());
         if (ast.getValue().isPresent()) {
             print(" = ");
@@ -236,7 +266,7 @@ public final class Generator implements Ast.Visitor<Void> {
             print("\"", lit, "\"");
         else if (lit instanceof Character)
             print("'", lit, "'");
-        else if (ast.getType() == Environment.Type.NIL)
+        else if (analysis.getType(ast) == Environment.Type.NIL)
             print("null");
         else
             print(lit);
@@ -266,7 +296,7 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Expression.Access ast) {
-        print(ast.getVariable().getJvmName());
+        print(analysis.getVariable(ast).getJvmName());
         if (ast.getOffset().isPresent())
             print("[", ast.getOffset().get(), "]");
         return null;
@@ -274,7 +304,7 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Expression.Function ast) {
-        print(ast.getFunction().getJvmName(), "(");
+        print(analysis.getFunction(ast).getJvmName(), "(");
         for (int i = 0; i < ast.getArguments().size(); i++){
             Ast.Expression exp = ast.getArguments().get(i);
             visit(exp);
@@ -0,0 +1,369 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A typed intermediate representation in static single assignment form,
+ * produced from an analysed {@link Ast.Source} by {@link IRLowerer}.
+ *
+ * Each {@link Function} is a control flow graph of {@link Block}s. A block
+ * holds its phi instructions, then its other instructions, then exactly one
+ * terminator ({@code JUMP}, {@code BRANCH} or {@code RETURN}). Local
+ * variables and parameters are SSA values; globals are not, as any call may
+ * change them, so they are read and written with {@code LOAD_GLOBAL} and
+ * {@code STORE_GLOBAL}.
+ *
+ * See {@link IRPrinter} for the text form and {@link IRVerifier} for the
+ * invariants every function satisfies.
+ */
+public final class IR {
+
+    private IR() {}
+
+    public static final class Program {
+
+        private final Function initializer;
+        private final List<Function> functions;
+
+        public Program(Function initializer, List<Function> functions) {
+            this.initializer = initializer;
+            this.functions = functions;
+        }
+
+        /**
+         * Returns the function that evaluates the global initializers, in
+         * source order.
+         */
+        public Function getInitializer() {
+            return initializer;
+        }
+
+        public List<Function> getFunctions() {
+            return functions;
+        }
+
+        /**
+         * Returns the function with the given key (see {@link Analysis#key}).
+         */
+        public Function getFunction(String key) {
+            for (Function function : functions) {
+                if (function.getKey().equals(key)) {
+                    return function;
+                }
+            }
+            throw new RuntimeException("The function " + key + " is not defined in this program.");
+        }
+
+    }
+
+    public static final class Function {
+
+        private final String name;
+        private final List<Parameter> parameters;
+        private final Environment.Type returnType;
+        private final List<Block> blocks = new ArrayList<>();
+
+        public Function(String name, List<Parameter> parameters, Environment.Type returnType) {
+            this.name = name;
+            this.parameters = parameters;
+            this.returnType = returnType;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getKey() {
+            return name + "/" + parameters.size();
+        }
+
+        public List<Parameter> getParameters() {
+            return parameters;
+        }
+
+        public Environment.Type getReturnType() {
+            return returnType;
+        }
+
+        /**
+         * Returns the blocks of the function; the first is the entry block.
+         */
+        public List<Block> getBlocks() {
+            return blocks;
+        }
+
+        public Block getEntry() {
+            return blocks.get(0);
+        }
+
+    }
+
+    public static final class Block {
+
+        private int id;
+        private final List<Instruction> phis = new ArrayList<>();
+        private final List<Instruction> instructions = new ArrayList<>();
+        private final List<Block> predecessors = new ArrayList<>();
+        private Instruction terminator;
+
+        public Block(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        void setId(int id) {
+            this.id = id;
+        }
+
+        public List<Instruction> getPhis() {
+            return phis;
+        }
+
+        public List<Instruction> getInstructions() {
+            return instructions;
+        }
+
+        /**
+         * Returns the predecessors of the block, in the order of the operands
+         * of its phi instructions.
+         */
+        public List<Block> getPredecessors() {
+            return predecessors;
+        }
+
+        public Instruction getTerminator() {
+            return terminator;
+        }
+
+        public void setTerminator(Instruction terminator) {
+            this.terminator = terminator;
+        }
+
+        public List<Block> getSuccessors() {
+            return terminator == null ? List.of() : terminator.getTargets();
+        }
+
+        @Override
+        public String toString() {
+            return "b" + id;
+        }
+
+    }
+
+    public abstract static class Value {
+
+        private final Environment.Type type;
+
+        private Value(Environment.Type type) {
+            this.type = type;
+        }
+
+        public Environment.Type getType() {
+            return type;
+        }
+
+    }
+
+    public static final class Constant extends Value {
+
+        public static final Constant NIL = new Constant(null, Environment.Type.NIL);
+
+        private final Object literal;
+
+        public Constant(Object literal, Environment.Type type) {
+            super(type);
+            this.literal = literal;
+        }
+
+        /**
+         * Returns the value of the constant as in {@link Ast.Expression.Literal},
+         * with {@code null} for {@code NIL}.
+         */
+        public Object getLiteral() {
+            return literal;
+        }
+
+        @Override
+        public String toString() {
+            if (literal == null) {
+                return "nil";
+            } else if (literal instanceof String) {
+                return "\"" + literal + "\"";
+            } else if (literal instanceof Character) {
+                return "'" + literal + "'";
+            }
+            return literal.toString();
+        }
+
+    }
+
+    public static final class Parameter extends Value {
+
+        private final String name;
+        private final int index;
+
+        public Parameter(String name, int index, Environment.Type type) {
+            super(type);
+            this.name = name;
+            this.index = index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return "%" + name;
+        }
+
+    }
+
+    public static final class Instruction extends Value {
+
+        public enum Op {
+            /** One operand per predecessor of the block. */
+            PHI,
+            /** {@code left, right}; see {@link Instruction#getOperator()}. */
+            BINARY,
+            /** No operands; see {@link Instruction#getGlobal()}. */
+            LOAD_GLOBAL,
+            /** {@code value}; see {@link Instruction#getGlobal()}. */
+            STORE_GLOBAL,
+            /** {@code list, offset}. */
+            LOAD_ELEMENT,
+            /** {@code list, offset, value}. */
+            STORE_ELEMENT,
+            /** The arguments; see {@link Instruction#getFunction()}. */
+            CALL,
+            /** The elements of a new list. */
+            LIST,
+            /** No operands, one target. */
+            JUMP,
+            /** {@code condition}, then the true and false targets. */
+            BRANCH,
+            /** {@code value}. */
+            RETURN;
+
+            public boolean isTerminator() {
+                return this == JUMP || this == BRANCH || this == RETURN;
+            }
+
+            public boolean hasResult() {
+                return !isTerminator() && this != STORE_GLOBAL && this != STORE_ELEMENT;
+            }
+
+        }
+
+        private int id;
+        private final Op op;
+        private final List<Value> operands;
+        private final List<Block> targets = new ArrayList<>();
+        private Block block;
+        private String operator;
+        private String global;
+        private Environment.Function function;
+
+        public Instruction(int id, Op op, Environment.Type type, List<Value> operands) {
+            super(type);
+            this.id = id;
+            this.op = op;
+            this.operands = new ArrayList<>(operands);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        void setId(int id) {
+            this.id = id;
+        }
+
+        public Op getOp() {
+            return op;
+        }
+
+        public List<Value> getOperands() {
+            return operands;
+        }
+
+        public List<Block> getTargets() {
+            return targets;
+        }
+
+        /**
+         * Returns the block this instruction belongs to.
+         */
+        public Block getBlock() {
+            return block;
+        }
+
+        public void setBlock(Block block) {
+            this.block = block;
+        }
+
+        /**
+         * Returns the operator of a {@code BINARY} instruction, which is never
+         * {@code &&} or {@code ||} as those are lowered to control flow.
+         */
+        public String getOperator() {
+            return operator;
+        }
+
+        public void setOperator(String operator) {
+            this.operator = operator;
+        }
+
+        /**
+         * Returns the name of the global of a {@code LOAD_GLOBAL} or {@code
+         * STORE_GLOBAL}.
+         */
+        public String getGlobal() {
+            return global;
+        }
+
+        public void setGlobal(String global) {
+            this.global = global;
+        }
+
+        /**
+         * Returns the function invoked by a {@code CALL}.
+         */
+        public Environment.Function getFunction() {
+            return function;
+        }
+
+        public void setFunction(Environment.Function function) {
+            this.function = function;
+        }
+
+        @Override
+        public String toString() {
+            return "%" + id;
+        }
+
+    }
+
+    /**
+     * Returns every instruction of the block: phis, others, then the
+     * terminator if there is one.
+     */
+    public static List<Instruction> instructions(Block block) {
+        List<Instruction> all = new ArrayList<>(block.getPhis());
+        all.addAll(block.getInstructions());
+        if (block.getTerminator() != null) {
+            all.add(block.getTerminator());
+        }
+        return Collections.unmodifiableList(all);
+    }
+
+}
@@ -0,0 +1,517 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lowers an analysed {@link Ast.Source} to {@link IR}, building SSA form
+ * directly from the AST: each block maps the variables assigned in it to
+ * their current value, and a read that reaches the start of a block with
+ * several predecessors places a phi. Blocks whose predecessors are not all
+ * known yet (loop headers) get incomplete phis, completed when the block is
+ * sealed, and phis that turn out to merge a single value are removed.
+ *
+ * {@code &&} and {@code ||} become branches so the right operand is only
+ * evaluated when the interpreter would, and a {@code SWITCH} becomes a chain
+ * of {@code ==} tests in case order with the {@code DEFAULT} case last.
+ * Statements after a {@code RETURN} are dropped with the blocks they end up
+ * in, as nothing can reach them.
+ */
+public final class IRLowerer implements Ast.Visitor<IR.Value> {
+
+    private final Analysis analysis;
+
+    private IR.Function function;
+    private IR.Block block;
+    private int values;
+    private Map<String, IR.Parameter> parameters;
+    private final Map<IR.Block, Map<Environment.Variable, IR.Value>> definitions = new HashMap<>();
+    private final Map<IR.Block, Map<Environment.Variable, IR.Instruction>> incomplete = new HashMap<>();
+    private final Set<IR.Block> sealed = new HashSet<>();
+
+    public IRLowerer() {
+        this(null);
+    }
+
+    public IRLowerer(Analysis analysis) {
+        this.analysis = Analysis.of(analysis);
+    }
+
+    public IR.Program lower(Ast.Source ast) {
+        begin("globals", List.of(), Environment.Type.NIL);
+        ast.getGlobals().forEach(this::visit);
+        IR.Function initializer = end();
+        List<IR.Function> functions = new ArrayList<>();
+        for (Ast.Function function : ast.getFunctions()) {
+            visit(function);
+            functions.add(end());
+        }
+        return new IR.Program(initializer, functions);
+    }
+
+    /**
+     * Lowers a single function of an analysed source.
+     */
+    public IR.Function lower(Ast.Function ast) {
+        visit(ast);
+        return end();
+    }
+
+    @Override
+    public IR.Value visit(Ast.Source ast) {
+        throw new UnsupportedOperationException("Use lower(Ast.Source).");
+    }
+
+    @Override
+    public IR.Value visit(Ast.Global ast) {
+        if (ast.getValue().isPresent()) {
+            IR.Instruction store = emit(IR.Instruction.Op.STORE_GLOBAL, Environment.Type.NIL, visit(ast.getValue().get()));
+            store.setGlobal(ast.getName());
+        }
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Function ast) {
+        Environment.Function signature = analysis.getFunction(ast);
+        List<IR.Parameter> list = new ArrayList<>();
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            list.add(new IR.Parameter(ast.getParameters().get(i), i, signature.getParameterTypes().get(i)));
+        }
+        begin(ast.getName(), list, signature.getReturnType());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Statement.Declaration ast) {
+        IR.Value value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : IR.Constant.NIL;
+        write(analysis.getVariable(ast), block, value);
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Statement.Assignment ast) {
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        if (receiver.getOffset().isPresent()) {
+            IR.Value list = read(receiver);
+            IR.Value offset = visit(receiver.getOffset().get());
+            emit(IR.Instruction.Op.STORE_ELEMENT, Environment.Type.NIL, list, offset, visit(ast.getValue()));
+        } else if (analysis.getAddress(receiver).isGlobal()) {
+            IR.Instruction store = emit(IR.Instruction.Op.STORE_GLOBAL, Environment.Type.NIL, visit(ast.getValue()));
+            store.setGlobal(receiver.getName());
+        } else {
+            write(analysis.getVariable(receiver), block, visit(ast.getValue()));
+        }
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Statement.If ast) {
+        IR.Value condition = visit(ast.getCondition());
+        IR.Block then = newBlock();
+        IR.Block join = newBlock();
+        IR.Block otherwise = ast.getElseStatements().isEmpty() ? join : newBlock();
+        branch(condition, then, otherwise);
+        seal(then);
+        block = then;
+        ast.getThenStatements().forEach(this::visit);
+        jump(join);
+        if (otherwise != join) {
+            seal(otherwise);
+            block = otherwise;
+            ast.getElseStatements().forEach(this::visit);
+            jump(join);
+        }
+        seal(join);
+        block = join;
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Statement.Switch ast) {
+        IR.Value condition = visit(ast.getCondition());
+        IR.Block join = newBlock();
+        Ast.Statement.Case fallback = null;
+        for (Ast.Statement.Case caseStatement : ast.getCases()) {
+            if (caseStatement.getValue().isEmpty()) {
+                fallback = caseStatement;
+                continue;
+            }
+            IR.Instruction test = emit(IR.Instruction.Op.BINARY, Environment.Type.BOOLEAN, condition, visit(caseStatement.getValue().get()));
+            test.setOperator("==");
+            IR.Block body = newBlock();
+            IR.Block next = newBlock();
+            branch(test, body, next);
+            seal(body);
+            seal(next);
+            block = body;
+            visit(caseStatement);
+            jump(join);
+            block = next;
+        }
+        if (fallback != null) {
+            visit(fallback);
+        }
+        jump(join);
+        seal(join);
+        block = join;
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Statement.Case ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Statement.While ast) {
+        IR.Block header = newBlock();
+        jump(header);
+        block = header;
+        IR.Value condition = visit(ast.getCondition());
+        IR.Block body = newBlock();
+        IR.Block exit = newBlock();
+        branch(condition, body, exit);
+        seal(body);
+        block = body;
+        ast.getStatements().forEach(this::visit);
+        jump(header);
+        seal(header);
+        seal(exit);
+        block = exit;
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Statement.Return ast) {
+        terminate(IR.Instruction.Op.RETURN, List.of(visit(ast.getValue())), List.of());
+        return null;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Expression.Literal ast) {
+        return ast.getLiteral() == null ? IR.Constant.NIL : new IR.Constant(ast.getLiteral(), analysis.getType(ast));
+    }
+
+    @Override
+    public IR.Value visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public IR.Value visit(Ast.Expression.Binary ast) {
+        IR.Value left = visit(ast.getLeft());
+        if (ast.getOperator().equals("&&") || ast.getOperator().equals("||")) {
+            IR.Block right = newBlock();
+            IR.Block join = newBlock();
+            if (ast.getOperator().equals("&&")) {
+                branch(left, right, join);
+            } else {
+                branch(left, join, right);
+            }
+            seal(right);
+            block = right;
+            IR.Value value = visit(ast.getRight());
+            jump(join);
+            seal(join);
+            block = join;
+            IR.Instruction phi = phi(join, analysis.getType(ast));
+            phi.getOperands().add(left);
+            phi.getOperands().add(value);
+            return phi;
+        }
+        IR.Instruction binary = emit(IR.Instruction.Op.BINARY, analysis.getType(ast), left, visit(ast.getRight()));
+        binary.setOperator(ast.getOperator());
+        return binary;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Expression.Access ast) {
+        IR.Value value = read(ast);
+        if (ast.getOffset().isPresent()) {
+            return emit(IR.Instruction.Op.LOAD_ELEMENT, analysis.getType(ast), value, visit(ast.getOffset().get()));
+        }
+        return value;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Expression.Function ast) {
+        List<IR.Value> arguments = new ArrayList<>();
+        ast.getArguments().forEach(argument -> arguments.add(visit(argument)));
+        Environment.Function callee = analysis.getFunction(ast);
+        IR.Instruction call = emit(IR.Instruction.Op.CALL, callee.getReturnType(), arguments.toArray(new IR.Value[0]));
+        call.setFunction(callee);
+        return call;
+    }
+
+    @Override
+    public IR.Value visit(Ast.Expression.PlcList ast) {
+        List<IR.Value> elements = new ArrayList<>();
+        ast.getValues().forEach(value -> elements.add(visit(value)));
+        return emit(IR.Instruction.Op.LIST, analysis.getType(ast), elements.toArray(new IR.Value[0]));
+    }
+
+    /**
+     * Returns the value of the variable named by an access, ignoring any
+     * offset.
+     */
+    private IR.Value read(Ast.Expression.Access ast) {
+        Environment.Variable variable = analysis.getVariable(ast);
+        if (analysis.getAddress(ast).isGlobal()) {
+            IR.Instruction load = emit(IR.Instruction.Op.LOAD_GLOBAL, variable.getType());
+            load.setGlobal(ast.getName());
+            return load;
+        }
+        return read(variable, block);
+    }
+
+    private void write(Environment.Variable variable, IR.Block block, IR.Value value) {
+        definitions.get(block).put(variable, value);
+    }
+
+    private IR.Value read(Environment.Variable variable, IR.Block block) {
+        IR.Value value = definitions.get(block).get(variable);
+        if (value != null) {
+            return value;
+        }
+        if (!sealed.contains(block)) {
+            IR.Instruction phi = phi(block, variable.getType());
+            incomplete.get(block).put(variable, phi);
+            value = phi;
+        } else if (block.getPredecessors().isEmpty()) {
+            value = block == function.getEntry() && parameters.containsKey(variable.getName())
+                    ? parameters.get(variable.getName())
+                    : IR.Constant.NIL;
+        } else if (block.getPredecessors().size() == 1) {
+            value = read(variable, block.getPredecessors().get(0));
+        } else {
+            IR.Instruction phi = phi(block, variable.getType());
+            write(variable, block, phi);
+            value = complete(variable, phi);
+        }
+        write(variable, block, value);
+        return value;
+    }
+
+    /**
+     * Adds the operands of a phi from its block's predecessors, returning the
+     * value that replaces it if it turns out to be trivial.
+     */
+    private IR.Value complete(Environment.Variable variable, IR.Instruction phi) {
+        for (IR.Block predecessor : phi.getBlock().getPredecessors()) {
+            phi.getOperands().add(read(variable, predecessor));
+        }
+        return simplify(phi);
+    }
+
+    /**
+     * Replaces a phi whose operands are all the same value (or the phi
+     * itself) by that value, then simplifies the phis that used it.
+     */
+    private IR.Value simplify(IR.Instruction phi) {
+        IR.Value same = null;
+        for (IR.Value operand : phi.getOperands()) {
+            if (operand == same || operand == phi) {
+                continue;
+            } else if (same != null) {
+                return phi;
+            }
+            same = operand;
+        }
+        IR.Value replacement = same == null ? IR.Constant.NIL : same;
+        phi.getBlock().getPhis().remove(phi);
+        List<IR.Instruction> users = new ArrayList<>();
+        for (IR.Block block : function.getBlocks()) {
+            for (IR.Instruction instruction : IR.instructions(block)) {
+                if (instruction.getOperands().contains(phi)) {
+                    instruction.getOperands().replaceAll(operand -> operand == phi ? replacement : operand);
+                    if (instruction.getOp() == IR.Instruction.Op.PHI) {
+                        users.add(instruction);
+                    }
+                }
+            }
+            definitions.get(block).replaceAll((variable, value) -> value == phi ? replacement : value);
+        }
+        for (IR.Instruction user : users) {
+            if (user.getBlock().getPhis().contains(user)) {
+                simplify(user);
+            }
+        }
+        return replacement;
+    }
+
+    private void seal(IR.Block block) {
+        for (Map.Entry<Environment.Variable, IR.Instruction> entry : incomplete.get(block).entrySet()) {
+            complete(entry.getKey(), entry.getValue());
+        }
+        incomplete.get(block).clear();
+        sealed.add(block);
+    }
+
+    private void begin(String name, List<IR.Parameter> list, Environment.Type returnType) {
+        function = new IR.Function(name, list, returnType);
+        values = 0;
+        parameters = new HashMap<>();
+        list.forEach(parameter -> parameters.put(parameter.getName(), parameter));
+        definitions.clear();
+        incomplete.clear();
+        sealed.clear();
+        block = newBlock();
+        seal(block);
+    }
+
+    /**
+     * Finishes the current function: returns {@code NIL} if the last block
+     * falls through, removes unreachable blocks, and numbers the blocks in
+     * reverse postorder and the values in block order.
+     */
+    private IR.Function end() {
+        if (block.getTerminator() == null) {
+            terminate(IR.Instruction.Op.RETURN, List.of(IR.Constant.NIL), List.of());
+        }
+        List<IR.Block> order = reversePostorder(function.getEntry());
+        Set<IR.Block> reachable = new HashSet<>(order);
+        for (IR.Block block : function.getBlocks()) {
+            if (!reachable.contains(block)) {
+                for (IR.Block successor : block.getSuccessors()) {
+                    for (int i = successor.getPredecessors().size() - 1; i >= 0; i--) {
+                        if (successor.getPredecessors().get(i) == block) {
+                            successor.getPredecessors().remove(i);
+                            for (IR.Instruction phi : successor.getPhis()) {
+                                phi.getOperands().remove(i);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        function.getBlocks().clear();
+        function.getBlocks().addAll(order);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (IR.Block block : order) {
+                for (IR.Instruction phi : List.copyOf(block.getPhis())) {
+                    if (block.getPhis().contains(phi) && simplify(phi) != phi) {
+                        changed = true;
+                    }
+                }
+            }
+        }
+        int id = 0;
+        for (int i = 0; i < order.size(); i++) {
+            IR.Block block = order.get(i);
+            block.setId(i);
+            for (IR.Instruction instruction : IR.instructions(block)) {
+                if (instruction.getOp().hasResult()) {
+                    instruction.setId(id++);
+                }
+            }
+        }
+        IR.Function result = function;
+        function = null;
+        block = null;
+        return result;
+    }
+
+    /**
+     * Returns the blocks reachable from {@code entry} in reverse postorder,
+     * visiting successors last to first so the true branch of a {@code
+     * BRANCH} is listed before the false one.
+     */
+    private static List<IR.Block> reversePostorder(IR.Block entry) {
+        List<IR.Block> postorder = new ArrayList<>();
+        Set<IR.Block> visited = new LinkedHashSet<>();
+        Deque<IR.Block> stack = new ArrayDeque<>();
+        Deque<Integer> next = new ArrayDeque<>();
+        visited.add(entry);
+        stack.push(entry);
+        next.push(0);
+        while (!stack.isEmpty()) {
+            IR.Block block = stack.peek();
+            int index = next.pop();
+            if (index < block.getSuccessors().size()) {
+                next.push(index + 1);
+                IR.Block successor = block.getSuccessors().get(block.getSuccessors().size() - 1 - index);
+                if (visited.add(successor)) {
+                    stack.push(successor);
+                    next.push(0);
+                }
+            } else {
+                stack.pop();
+                postorder.add(block);
+            }
+        }
+        List<IR.Block> order = new ArrayList<>();
+        for (int i = postorder.size() - 1; i >= 0; i--) {
+            order.add(postorder.get(i));
+        }
+        return order;
+    }
+
+    private IR.Block newBlock() {
+        IR.Block block = new IR.Block(function.getBlocks().size());
+        function.getBlocks().add(block);
+        definitions.put(block, new IdentityHashMap<>());
+        incomplete.put(block, new IdentityHashMap<>());
+        return block;
+    }
+
+    private IR.Instruction phi(IR.Block block, Environment.Type type) {
+        IR.Instruction phi = new IR.Instruction(values++, IR.Instruction.Op.PHI, type, List.of());
+        phi.setBlock(block);
+        block.getPhis().add(phi);
+        return phi;
+    }
+
+    private IR.Instruction emit(IR.Instruction.Op op, Environment.Type type, IR.Value... operands) {
+        IR.Instruction instruction = new IR.Instruction(values++, op, type, List.of(operands));
+        instruction.setBlock(block);
+        block.getInstructions().add(instruction);
+        return instruction;
+    }
+
+    private void jump(IR.Block target) {
+        terminate(IR.Instruction.Op.JUMP, List.of(), List.of(target));
+    }
+
+    private void branch(IR.Value condition, IR.Block then, IR.Block otherwise) {
+        terminate(IR.Instruction.Op.BRANCH, List.of(condition), List.of(then, otherwise));
+    }
+
+    /**
+     * Ends the current block. After a {@code RETURN} the statements that
+     * follow are lowered into a fresh block with no predecessors, which
+     * {@link #end()} removes.
+     */
+    private void terminate(IR.Instruction.Op op, List<IR.Value> operands, List<IR.Block> targets) {
+        IR.Instruction terminator = new IR.Instruction(values++, op, Environment.Type.NIL, operands);
+        terminator.setBlock(block);
+        terminator.getTargets().addAll(targets);
+        block.setTerminator(terminator);
+        for (IR.Block target : targets) {
+            target.getPredecessors().add(block);
+        }
+        if (op == IR.Instruction.Op.RETURN) {
+            block = newBlock();
+            seal(block);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package plc.project;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes {@link IR} as text, one function after another:
+ *
+ * <pre>
+ * function fact(%n: Integer): Integer {
+ * b0:
+ *     %0: Boolean = binary &lt; %n, 2
+ *     branch %0, b1, b2
+ * b1: ; preds b0
+ *     return 1
+ * ...
+ * }
+ * </pre>
+ *
+ * Values are written as {@code %id}, parameters as {@code %name}, constants
+ * as literals and globals as {@code @name}; phi operands are paired with the
+ * predecessor they come from.
+ */
+public final class IRPrinter {
+
+    private final PrintWriter writer;
+
+    public IRPrinter(PrintWriter writer) {
+        this.writer = writer;
+    }
+
+    public void print(IR.Program program) {
+        print(program.getInitializer());
+        for (IR.Function function : program.getFunctions()) {
+            writer.write("\n");
+            print(function);
+        }
+    }
+
+    public void print(IR.Function function) {
+        writer.write("function " + function.getName() + "(" + function.getParameters().stream()
+                .map(parameter -> parameter + ": " + parameter.getType().getName())
+                .collect(Collectors.joining(", ")) + "): " + function.getReturnType().getName() + " {\n");
+        for (IR.Block block : function.getBlocks()) {
+            writer.write(block + ":");
+            if (!block.getPredecessors().isEmpty()) {
+                writer.write(" ; preds " + join(block.getPredecessors()));
+            }
+            writer.write("\n");
+            for (IR.Instruction instruction : IR.instructions(block)) {
+                writer.write("    " + format(instruction) + "\n");
+            }
+        }
+        writer.write("}\n");
+        writer.flush();
+    }
+
+    /**
+     * Returns the text of a single instruction, without indentation.
+     */
+    public static String format(IR.Instruction instruction) {
+        StringBuilder builder = new StringBuilder();
+        if (instruction.getOp().hasResult()) {
+            builder.append(instruction).append(": ").append(instruction.getType().getName()).append(" = ");
+        }
+        builder.append(instruction.getOp().name().toLowerCase());
+        List<IR.Value> operands = instruction.getOperands();
+        switch (instruction.getOp()) {
+            case PHI:
+                List<IR.Block> predecessors = instruction.getBlock().getPredecessors();
+                for (int i = 0; i < operands.size(); i++) {
+                    builder.append(i == 0 ? " " : ", ").append("[").append(operands.get(i)).append(", ")
+                            .append(i < predecessors.size() ? predecessors.get(i) : "?").append("]");
+                }
+                return builder.toString();
+            case BINARY:
+                return builder.append(" ").append(instruction.getOperator()).append(" ").append(join(operands)).toString();
+            case LOAD_GLOBAL:
+                return builder.append(" @").append(instruction.getGlobal()).toString();
+            case STORE_GLOBAL:
+                return builder.append(" @").append(instruction.getGlobal()).append(", ").append(join(operands)).toString();
+            case CALL:
+                builder.append(" ").append(instruction.getFunction().getName()).append("/").append(instruction.getFunction().getArity());
+                return builder.append("(").append(join(operands)).append(")").toString();
+            case JUMP:
+                return builder.append(" ").append(join(instruction.getTargets())).toString();
+            case BRANCH:
+                return builder.append(" ").append(join(operands)).append(", ").append(join(instruction.getTargets())).toString();
+            default:
+                return operands.isEmpty() ? builder.toString() : builder.append(" ").append(join(operands)).toString();
+        }
+    }
+
+    private static String join(List<?> objects) {
+        return objects.stream().map(Object::toString).collect(Collectors.joining(", "));
+    }
+
+}
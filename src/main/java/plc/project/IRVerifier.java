@@ -0,0 +1,238 @@
+package plc.project;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks the invariants of {@link IR}, throwing a {@link RuntimeException}
+ * that names the function and the offending instruction or block:
+ *
+ * <ul>
+ *     <li>every block ends with exactly one terminator, has its phis first
+ *     and lists as predecessors exactly the blocks that jump to it,</li>
+ *     <li>each instruction has the operands its {@link IR.Instruction.Op}
+ *     requires, and a branch condition is a {@code Boolean},</li>
+ *     <li>every value is defined once, by an instruction of the function or
+ *     as one of its parameters, and</li>
+ *     <li>every definition dominates its uses; for a phi, the use is at the
+ *     end of the corresponding predecessor.</li>
+ * </ul>
+ *
+ * All blocks must be reachable from the entry block.
+ */
+public final class IRVerifier {
+
+    private IRVerifier() {}
+
+    public static void verify(IR.Program program) {
+        verify(program.getInitializer());
+        program.getFunctions().forEach(IRVerifier::verify);
+    }
+
+    public static void verify(IR.Function function) {
+        List<IR.Block> blocks = function.getBlocks();
+        if (blocks.isEmpty()) {
+            throw error(function, "has no blocks");
+        }
+        Map<IR.Block, Integer> indices = new IdentityHashMap<>();
+        blocks.forEach(block -> indices.put(block, indices.size()));
+        Map<IR.Instruction, Integer> positions = new IdentityHashMap<>();
+        Set<Integer> ids = new HashSet<>();
+        Map<IR.Block, Integer> incoming = new IdentityHashMap<>();
+        for (IR.Block block : blocks) {
+            checkStructure(function, block);
+            List<IR.Instruction> instructions = IR.instructions(block);
+            for (int i = 0; i < instructions.size(); i++) {
+                IR.Instruction instruction = instructions.get(i);
+                if (positions.put(instruction, i) != null) {
+                    throw error(function, instruction + " is defined more than once");
+                } else if (instruction.getOp().hasResult() && !ids.add(instruction.getId())) {
+                    throw error(function, "the id " + instruction + " is used more than once");
+                }
+                checkOperands(function, instruction);
+            }
+            for (IR.Block target : block.getSuccessors()) {
+                if (!indices.containsKey(target)) {
+                    throw error(function, block + " jumps to a block of another function");
+                }
+                incoming.merge(target, 1, Integer::sum);
+            }
+        }
+        for (IR.Block block : blocks) {
+            Map<IR.Block, Integer> expected = new HashMap<>();
+            for (IR.Block predecessor : block.getPredecessors()) {
+                expected.merge(predecessor, 1, Integer::sum);
+            }
+            int count = 0;
+            for (IR.Block predecessor : expected.keySet()) {
+                if (!indices.containsKey(predecessor) || Collections.frequency(predecessor.getSuccessors(), block) != expected.get(predecessor)) {
+                    throw error(function, block + " lists " + predecessor + " as a predecessor, which does not jump to it");
+                }
+                count += expected.get(predecessor);
+            }
+            if (count != incoming.getOrDefault(block, 0)) {
+                throw error(function, block + " is missing predecessors");
+            }
+        }
+        if (!function.getEntry().getPredecessors().isEmpty()) {
+            throw error(function, "the entry block has predecessors");
+        }
+
+        BitSet[] dominators = dominators(function, indices);
+        for (IR.Block block : blocks) {
+            for (IR.Instruction instruction : IR.instructions(block)) {
+                for (int i = 0; i < instruction.getOperands().size(); i++) {
+                    IR.Value operand = instruction.getOperands().get(i);
+                    if (operand instanceof IR.Parameter) {
+                        if (!function.getParameters().contains(operand)) {
+                            throw error(function, instruction + " uses a parameter of another function");
+                        }
+                    } else if (operand instanceof IR.Instruction) {
+                        IR.Instruction definition = (IR.Instruction) operand;
+                        if (!positions.containsKey(definition) || !indices.containsKey(definition.getBlock())) {
+                            throw error(function, instruction + " uses " + definition + ", which is not defined in the function");
+                        } else if (!definition.getOp().hasResult()) {
+                            throw error(function, instruction + " uses the result of a " + definition.getOp());
+                        }
+                        boolean phi = instruction.getOp() == IR.Instruction.Op.PHI;
+                        IR.Block use = phi ? block.getPredecessors().get(i) : block;
+                        boolean dominates = definition.getBlock() == use
+                                ? phi || positions.get(definition) < positions.get(instruction)
+                                : dominators[indices.get(use)].get(indices.get(definition.getBlock()));
+                        if (!dominates) {
+                            throw error(function, "the definition of " + definition + " does not dominate its use in " + IRPrinter.format(instruction));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkStructure(IR.Function function, IR.Block block) {
+        if (block.getTerminator() == null || !block.getTerminator().getOp().isTerminator()) {
+            throw error(function, block + " does not end with a terminator");
+        }
+        for (IR.Instruction phi : block.getPhis()) {
+            if (phi.getOp() != IR.Instruction.Op.PHI) {
+                throw error(function, IRPrinter.format(phi) + " is among the phis of " + block);
+            } else if (phi.getOperands().size() != block.getPredecessors().size()) {
+                throw error(function, "the phi " + phi + " has " + phi.getOperands().size() + " operands but " + block + " has "
+                        + block.getPredecessors().size() + " predecessors");
+            }
+        }
+        for (IR.Instruction instruction : block.getInstructions()) {
+            if (instruction.getOp() == IR.Instruction.Op.PHI || instruction.getOp().isTerminator()) {
+                throw error(function, IRPrinter.format(instruction) + " is in the middle of " + block);
+            }
+        }
+        for (IR.Instruction instruction : IR.instructions(block)) {
+            if (instruction.getBlock() != block) {
+                throw error(function, IRPrinter.format(instruction) + " is in " + block + " but refers to another block");
+            }
+        }
+    }
+
+    private static void checkOperands(IR.Function function, IR.Instruction instruction) {
+        int operands = instruction.getOperands().size();
+        int targets = instruction.getTargets().size();
+        boolean valid;
+        switch (instruction.getOp()) {
+            case BINARY:
+                valid = operands == 2 && instruction.getOperator() != null;
+                break;
+            case LOAD_GLOBAL:
+                valid = operands == 0 && instruction.getGlobal() != null;
+                break;
+            case STORE_GLOBAL:
+                valid = operands == 1 && instruction.getGlobal() != null;
+                break;
+            case LOAD_ELEMENT:
+                valid = operands == 2;
+                break;
+            case STORE_ELEMENT:
+                valid = operands == 3;
+                break;
+            case CALL:
+                valid = instruction.getFunction() != null && operands == instruction.getFunction().getArity();
+                break;
+            case JUMP:
+                valid = operands == 0 && targets == 1;
+                break;
+            case BRANCH:
+                valid = operands == 1 && targets == 2 && instruction.getOperands().get(0).getType().equals(Environment.Type.BOOLEAN);
+                break;
+            case RETURN:
+                valid = operands == 1 && targets == 0;
+                break;
+            default:
+                valid = true;
+        }
+        if (!valid || (!instruction.getOp().isTerminator() && targets != 0)) {
+            throw error(function, "malformed instruction " + IRPrinter.format(instruction));
+        }
+    }
+
+    /**
+     * Returns, for each block, the set of indices of the blocks that dominate
+     * it, throwing if any block is unreachable.
+     */
+    private static BitSet[] dominators(IR.Function function, Map<IR.Block, Integer> indices) {
+        List<IR.Block> blocks = function.getBlocks();
+        BitSet[] dominators = new BitSet[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            dominators[i] = new BitSet();
+            if (i == 0) {
+                dominators[i].set(0);
+            } else {
+                dominators[i].set(0, blocks.size());
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < blocks.size(); i++) {
+                BitSet set = new BitSet();
+                set.set(0, blocks.size());
+                for (IR.Block predecessor : blocks.get(i).getPredecessors()) {
+                    set.and(dominators[indices.get(predecessor)]);
+                }
+                set.set(i);
+                if (!set.equals(dominators[i])) {
+                    dominators[i] = set;
+                    changed = true;
+                }
+            }
+        }
+        BitSet reachable = new BitSet();
+        reachable.set(0);
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (int i = 0; i < blocks.size(); i++) {
+                if (reachable.get(i)) {
+                    for (IR.Block successor : blocks.get(i).getSuccessors()) {
+                        if (!reachable.get(indices.get(successor))) {
+                            reachable.set(indices.get(successor));
+                            grown = true;
+                        }
+                    }
+                }
+            }
+        }
+        if (reachable.cardinality() != blocks.size()) {
+            throw error(function, blocks.get(reachable.nextClearBit(0)) + " is unreachable");
+        }
+        return dominators;
+    }
+
+    private static RuntimeException error(IR.Function function, String message) {
+        return new RuntimeException("In " + function.getKey() + ", " + message + ".");
+    }
+
+}
@@ -0,0 +1,126 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Re-analyses a program after edits, checking only the declarations that
+ * changed and those that (transitively) depend on them. Dependencies are
+ * the ones recorded by the {@link Analyzer}: each function body and global
+ * initializer lists the globals and functions it references.
+ *
+ * Declarations are matched between runs by node identity, so an edit is
+ * made by building a new {@link Ast.Source} that reuses the unchanged
+ * {@link Ast.Global} and {@link Ast.Function} nodes. Nodes that are new,
+ * and keys that disappeared, are treated as changed automatically. Each run
+ * only keeps the results of declarations still in the source, with their
+ * references re-bound to the globals and functions that run defined.
+ *
+ * The AST is not annotated; results are returned as an {@link Analysis}.
+ * As with {@link Analyzer#visitParallel}, every signature is defined before
+ * bodies are checked, so bodies may call functions defined after them.
+ */
+public final class IncrementalAnalyzer {
+
+    private final Scope parent;
+    private final Environment.TypeRegistry types;
+    private Analysis analysis = null;
+    private Map<Ast, String> declarations = new IdentityHashMap<>();
+    private Set<String> reanalyzed = Set.of();
+
+    public IncrementalAnalyzer(Scope parent) {
+        this(parent, Environment.getDefaultRegistry());
+    }
+
+    public IncrementalAnalyzer(Scope parent, Environment.TypeRegistry types) {
+        this.parent = parent;
+        this.types = types;
+    }
+
+    public Analysis analyze(Ast.Source source) {
+        return analyze(source, Set.of());
+    }
+
+    /**
+     * Analyses {@code source}, treating the declarations named in {@code
+     * changed} (see {@link Analysis#key}) as modified in addition to any
+     * declaration node that was not part of the previous run.
+     */
+    public Analysis analyze(Ast.Source source, Set<String> changed) {
+        Map<Ast, String> current = new IdentityHashMap<>();
+        source.getGlobals().forEach(global -> current.put(global, Analysis.key(global)));
+        source.getFunctions().forEach(function -> current.put(function, Analysis.key(function)));
+
+        Set<String> roots = new HashSet<>(changed);
+        current.forEach((node, key) -> {
+            if (!declarations.containsKey(node)) {
+                roots.add(key);
+            }
+        });
+        Set<String> keys = new HashSet<>(current.values());
+        for (String key : declarations.values()) {
+            if (!keys.contains(key)) {
+                roots.add(key);
+            }
+        }
+
+        Set<String> dirtyKeys = dependents(roots);
+        Set<Ast> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+        current.forEach((node, key) -> {
+            if (dirtyKeys.contains(key)) {
+                dirty.add(node);
+            }
+        });
+
+        Analyzer analyzer = new Analyzer(parent, types, false);
+        analyzer.visitIncremental(source, analysis, dirty);
+        analysis = analyzer.getAnalysis();
+        declarations = current;
+        dirtyKeys.retainAll(keys);
+        reanalyzed = Collections.unmodifiableSet(dirtyKeys);
+        return analysis;
+    }
+
+    public Analysis getAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * Returns the keys of the declarations checked by the last run.
+     */
+    public Set<String> getReanalyzed() {
+        return reanalyzed;
+    }
+
+    /**
+     * Returns {@code roots} and every declaration that transitively depends
+     * on one of them, according to the previous analysis.
+     */
+    private Set<String> dependents(Set<String> roots) {
+        Map<String, Set<String>> reverse = new HashMap<>();
+        if (analysis != null) {
+            for (String owner : analysis.getDeclarations()) {
+                for (String dependency : analysis.getDependencies(owner)) {
+                    reverse.computeIfAbsent(dependency, k -> new HashSet<>()).add(owner);
+                }
+            }
+        }
+        Set<String> result = new HashSet<>(roots);
+        Deque<String> worklist = new ArrayDeque<>(roots);
+        while (!worklist.isEmpty()) {
+            for (String dependent : reverse.getOrDefault(worklist.pop(), Set.of())) {
+                if (result.add(dependent)) {
+                    worklist.push(dependent);
+                }
+            }
+        }
+        return result;
+    }
+
+}
@@ -26,7 +26,18 @@ public final class Lexer {
      * whitespace where appropriate.
      */
     public List<Token> lex() {
-        List<Token> tokens = new ArrayList<>();
+        return lex(new ArrayList<>());
+    }
+
+    /**
+     * Lexes the input into a {@link TokenBuffer} with its token records held
+     * outside the GC heap, which the caller is responsible for closing.
+     */
+    public TokenBuffer lexOffHeap() {
+        return lex(new TokenBuffer(chars.input));
+    }
+
+    private <T extends List<Token>> T lex(T tokens) {
         while (chars.has(0)) {
             if (!peek("[ \b\n\r\t\f\u000B]")) {  // Skip whitespace
                 tokens.add(lexToken());
@@ -0,0 +1,267 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Moves loop-invariant expressions out of {@code WHILE} loops. An expression
+ * is invariant if it is pure and nothing the loop executes may write what it
+ * reads: no assignment or declaration of its variables, no store to a list
+ * it indexes, and no call whose effects could do either. Each invariant is
+ * evaluated once into a temporary, {@code LET $licm0 = n * n;}, declared just
+ * before the loop, and its occurrences in the loop read the temporary.
+ *
+ * Hoisting evaluates an expression even if the loop body never runs, so an
+ * invariant that can fail (division, exponentiation, indexing, a call, or
+ * any operator on a variable that may still be NIL, see {@link
+ * NilAnalysis}) is only hoisted from the loop condition, which always runs,
+ * and only if it is evaluated before anything in the condition that could
+ * fail or have an effect and not to the right of {@code &&} or {@code ||}.
+ * Invariants that cannot fail are hoisted from anywhere in the loop,
+ * including nested branches and loops. Outer loops are processed first, so
+ * an expression invariant in several nested loops is moved out of all of
+ * them.
+ *
+ * Calls are only invariant once an {@link EffectAnalyzer} has marked their
+ * functions pure or as only reading list elements, and a call that reads
+ * elements is not invariant in a loop that stores to a list.
+ */
+public final class LoopInvariantHoister extends AstRewriter {
+
+    private static final String PREFIX = "$licm";
+
+    private final Analysis analysis;
+    private NilAnalysis nils = NilAnalysis.unknown();
+    private final Map<Ast.Expression, String> temporaries = new IdentityHashMap<>();
+    private Ast.Expression defining;
+    private int hoisted = 0;
+    private int replaced = 0;
+
+    public LoopInvariantHoister() {
+        this(null);
+    }
+
+    public LoopInvariantHoister(Analysis analysis) {
+        this.analysis = Analysis.of(analysis);
+    }
+
+    /**
+     * Returns the number of temporaries declared before loops.
+     */
+    public int getHoistedCount() {
+        return hoisted;
+    }
+
+    /**
+     * Returns the number of expressions in loops replaced by a temporary.
+     */
+    public int getReplacedCount() {
+        return replaced;
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        nils = NilAnalysis.of(ast, analysis);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Function ast) {
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Function(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.If ast) {
+        Ast.Expression condition = rewrite(ast.getCondition());
+        List<Ast.Statement> thenStatements = statements(ast.getThenStatements());
+        List<Ast.Statement> elseStatements = statements(ast.getElseStatements());
+        if (condition == ast.getCondition() && thenStatements == ast.getThenStatements() && elseStatements == ast.getElseStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.If(condition, thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Case ast) {
+        Optional<Ast.Expression> value = rewrite(ast.getValue());
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (value == ast.getValue() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.Case(value, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.While ast) {
+        Ast.Expression condition = rewrite(ast.getCondition());
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (condition == ast.getCondition() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.While(condition, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Group ast) {
+        return replace(ast) ? temporary(ast) : super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        return replace(ast) ? temporary(ast) : super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Access ast) {
+        return replace(ast) ? temporary(ast) : super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Function ast) {
+        return replace(ast) ? temporary(ast) : super.visit(ast);
+    }
+
+    private boolean replace(Ast.Expression ast) {
+        return ast != defining && temporaries.containsKey(ast);
+    }
+
+    private Ast.Expression temporary(Ast.Expression ast) {
+        return new Ast.Expression.Access(Optional.empty(), temporaries.get(ast));
+    }
+
+    /**
+     * Rewrites a block, declaring the invariants of each loop before it.
+     */
+    private List<Ast.Statement> statements(List<Ast.Statement> statements) {
+        List<Ast.Statement> result = new ArrayList<>();
+        boolean changed = false;
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.While) {
+                for (Ast.Expression invariant : hoist((Ast.Statement.While) statement)) {
+                    defining = invariant;
+                    result.add(new Ast.Statement.Declaration(temporaries.get(invariant), Optional.empty(), Optional.of(rewrite(invariant))));
+                    defining = null;
+                    changed = true;
+                }
+            }
+            Ast.Statement rewritten = rewrite(statement);
+            changed |= rewritten != statement;
+            result.add(rewritten);
+        }
+        return changed ? result : statements;
+    }
+
+    /**
+     * Finds the invariants of a loop, in the order they are declared, and
+     * assigns each a temporary. Equal invariants share one.
+     */
+    private List<Ast.Expression> hoist(Ast.Statement.While ast) {
+        Search search = new Search(Footprint.writes(ast, analysis));
+        search.find(ast.getCondition(), true);
+        ast.getStatements().forEach(search::find);
+        return search.invariants;
+    }
+
+    /**
+     * The search for the invariants of one loop.
+     */
+    private final class Search {
+
+        private final Footprint writes;
+        private final List<Ast.Expression> invariants = new ArrayList<>();
+        private boolean blocked = false;
+
+        private Search(Footprint writes) {
+            this.writes = writes;
+        }
+
+        private void find(Ast.Statement ast) {
+            if (ast instanceof Ast.Statement.Expression) {
+                find(((Ast.Statement.Expression) ast).getExpression(), false);
+            } else if (ast instanceof Ast.Statement.Declaration) {
+                ((Ast.Statement.Declaration) ast).getValue().ifPresent(value -> find(value, false));
+            } else if (ast instanceof Ast.Statement.Assignment) {
+                Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) ast;
+                ((Ast.Expression.Access) assignment.getReceiver()).getOffset().ifPresent(offset -> find(offset, false));
+                find(assignment.getValue(), false);
+            } else if (ast instanceof Ast.Statement.If) {
+                Ast.Statement.If branch = (Ast.Statement.If) ast;
+                find(branch.getCondition(), false);
+                branch.getThenStatements().forEach(this::find);
+                branch.getElseStatements().forEach(this::find);
+            } else if (ast instanceof Ast.Statement.Switch) {
+                Ast.Statement.Switch branch = (Ast.Statement.Switch) ast;
+                find(branch.getCondition(), false);
+                for (Ast.Statement.Case caseStatement : branch.getCases()) {
+                    caseStatement.getValue().ifPresent(value -> find(value, false));
+                    caseStatement.getStatements().forEach(this::find);
+                }
+            } else if (ast instanceof Ast.Statement.While) {
+                Ast.Statement.While loop = (Ast.Statement.While) ast;
+                find(loop.getCondition(), false);
+                loop.getStatements().forEach(this::find);
+            } else if (ast instanceof Ast.Statement.Return) {
+                find(((Ast.Statement.Return) ast).getValue(), false);
+            }
+        }
+
+        /**
+         * Finds the largest invariants within an expression. {@code leading}
+         * is {@code true} while nothing that could fail or have an effect has
+         * been evaluated since the loop condition started.
+         */
+        private void find(Ast.Expression ast, boolean leading) {
+            if (temporaries.containsKey(ast) || ast instanceof Ast.Expression.Literal
+                    || (ast instanceof Ast.Expression.Access && ((Ast.Expression.Access) ast).getOffset().isEmpty())) {
+                return;
+            }
+            if (invariant(ast) && (!Footprint.mayFail(ast, nils) || (leading && !blocked))) {
+                add(ast);
+                return;
+            }
+            if (ast instanceof Ast.Expression.Group) {
+                find(((Ast.Expression.Group) ast).getExpression(), leading);
+            } else if (ast instanceof Ast.Expression.Binary) {
+                Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+                find(binary.getLeft(), leading);
+                boolean shortCircuit = binary.getOperator().equals("&&") || binary.getOperator().equals("||");
+                find(binary.getRight(), leading && !shortCircuit);
+                blocked |= Footprint.operatorMayFail(binary, nils);
+            } else if (ast instanceof Ast.Expression.Access) {
+                find(((Ast.Expression.Access) ast).getOffset().get(), leading);
+                blocked = true;
+            } else if (ast instanceof Ast.Expression.Function) {
+                ((Ast.Expression.Function) ast).getArguments().forEach(argument -> find(argument, leading));
+                blocked = true;
+            } else if (ast instanceof Ast.Expression.PlcList) {
+                ((Ast.Expression.PlcList) ast).getValues().forEach(value -> find(value, leading));
+            }
+        }
+
+        private boolean invariant(Ast.Expression ast) {
+            Footprint reads = Footprint.reads(ast, analysis);
+            return reads != null && !writes.overlaps(reads);
+        }
+
+        private void add(Ast.Expression ast) {
+            replaced++;
+            for (Ast.Expression invariant : invariants) {
+                if (invariant.equals(ast)) {
+                    temporaries.put(ast, temporaries.get(invariant));
+                    return;
+                }
+            }
+            temporaries.put(ast, PREFIX + hoisted++);
+            invariants.add(ast);
+        }
+
+    }
+
+}
@@ -0,0 +1,188 @@
+package plc.project;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The expressions of a source that may evaluate to NIL, used by the passes
+ * that move, drop or repeat expressions. A variable declared without a value
+ * holds NIL until it is assigned, and arithmetic, comparison and logic on
+ * NIL throw, so an operator with an operand that may be NIL can fail.
+ *
+ * A variable may be NIL if it is declared without a value or assigned a
+ * value that may be NIL, and a parameter if an argument passed for it may
+ * be. A call may return NIL if its function is not in the source, returns a
+ * value that may be NIL or may end without a {@code RETURN}. Lists are not
+ * told apart, so an element may be NIL if any list holds such a value. The
+ * results are computed together, until none changes.
+ */
+final class NilAnalysis {
+
+    private static final NilAnalysis UNKNOWN = new NilAnalysis(null);
+
+    private final Analysis analysis;
+    private final Map<Environment.Function, Ast.Function> functions = new IdentityHashMap<>();
+    private final Map<Environment.Function, Set<String>> parameters = new IdentityHashMap<>();
+    private final Set<Environment.Function> returns = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Environment.Variable> variables = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Environment.Variable> locals = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean elements;
+    private Environment.Function function;
+    private boolean changed;
+
+    private NilAnalysis(Analysis analysis) {
+        this.analysis = analysis;
+    }
+
+    /**
+     * Analyses a source using the results in {@code analysis}, read through
+     * {@link Analysis#of(Analysis)}.
+     */
+    static NilAnalysis of(Ast.Source ast, Analysis analysis) {
+        NilAnalysis nils = new NilAnalysis(Analysis.of(analysis));
+        ast.getFunctions().forEach(function -> nils.functions.put(nils.analysis.getFunction(function), function));
+        do {
+            nils.changed = false;
+            ast.getGlobals().forEach(nils::scan);
+            ast.getFunctions().forEach(nils::scan);
+        } while (nils.changed);
+        return nils;
+    }
+
+    /**
+     * Returns the result for code outside of an analysed source, where
+     * every variable and call may be NIL.
+     */
+    static NilAnalysis unknown() {
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns whether evaluating an expression may produce NIL. The result
+     * of an operator never is, as it throws on NIL.
+     */
+    boolean mayBeNil(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Literal) {
+            return ((Ast.Expression.Literal) ast).getLiteral() == null;
+        } else if (ast instanceof Ast.Expression.Group) {
+            return mayBeNil(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Access) {
+            if (analysis == null) {
+                return true;
+            }
+            return ((Ast.Expression.Access) ast).getOffset().isPresent() ? elements : variables.contains(analysis.getVariable(ast));
+        } else if (ast instanceof Ast.Expression.Function) {
+            if (analysis == null) {
+                return true;
+            }
+            Environment.Function callee = analysis.getFunction(ast);
+            return !functions.containsKey(callee) || returns.contains(callee);
+        }
+        return false;
+    }
+
+    private void scan(Ast.Global ast) {
+        boolean nil = ast.getValue().map(this::scan).orElse(true);
+        if (nil) {
+            changed |= variables.add(analysis.getVariable(ast));
+        }
+    }
+
+    private void scan(Ast.Function ast) {
+        function = analysis.getFunction(ast);
+        ast.getStatements().forEach(this::scan);
+        List<Ast.Statement> statements = ast.getStatements();
+        if (statements.isEmpty() || !(statements.get(statements.size() - 1) instanceof Ast.Statement.Return)) {
+            changed |= returns.add(function);
+        }
+        function = null;
+    }
+
+    private void scan(Ast.Statement ast) {
+        if (ast instanceof Ast.Statement.Expression) {
+            scan(((Ast.Statement.Expression) ast).getExpression());
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) ast;
+            boolean nil = declaration.getValue().map(this::scan).orElse(true);
+            Environment.Variable variable = analysis.getVariable(declaration);
+            locals.add(variable);
+            if (nil) {
+                changed |= variables.add(variable);
+            }
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) ast;
+            Ast.Expression.Access receiver = (Ast.Expression.Access) assignment.getReceiver();
+            receiver.getOffset().ifPresent(this::scan);
+            boolean nil = scan(assignment.getValue());
+            if (nil && receiver.getOffset().isPresent()) {
+                changed |= !elements;
+                elements = true;
+            } else if (nil) {
+                changed |= variables.add(analysis.getVariable(receiver));
+            }
+        } else if (ast instanceof Ast.Statement.If) {
+            Ast.Statement.If branch = (Ast.Statement.If) ast;
+            scan(branch.getCondition());
+            branch.getThenStatements().forEach(this::scan);
+            branch.getElseStatements().forEach(this::scan);
+        } else if (ast instanceof Ast.Statement.Switch) {
+            Ast.Statement.Switch branch = (Ast.Statement.Switch) ast;
+            scan(branch.getCondition());
+            for (Ast.Statement.Case caseStatement : branch.getCases()) {
+                caseStatement.getValue().ifPresent(this::scan);
+                caseStatement.getStatements().forEach(this::scan);
+            }
+        } else if (ast instanceof Ast.Statement.While) {
+            Ast.Statement.While loop = (Ast.Statement.While) ast;
+            scan(loop.getCondition());
+            loop.getStatements().forEach(this::scan);
+        } else if (ast instanceof Ast.Statement.Return) {
+            if (scan(((Ast.Statement.Return) ast).getValue())) {
+                changed |= returns.add(function);
+            }
+        }
+    }
+
+    /**
+     * Records the arguments and parameters within an expression and returns
+     * whether it may be NIL.
+     */
+    private boolean scan(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Group) {
+            scan(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            scan(((Ast.Expression.Binary) ast).getLeft());
+            scan(((Ast.Expression.Binary) ast).getRight());
+        } else if (ast instanceof Ast.Expression.Access) {
+            Ast.Expression.Access access = (Ast.Expression.Access) ast;
+            access.getOffset().ifPresent(this::scan);
+            Environment.Variable variable = analysis.getVariable(access);
+            if (function != null && access.getOffset().isEmpty() && !analysis.getAddress(access).isGlobal()
+                    && !locals.contains(variable) && parameters.getOrDefault(function, Set.of()).contains(access.getName())) {
+                changed |= variables.add(variable);
+            }
+        } else if (ast instanceof Ast.Expression.Function) {
+            Ast.Expression.Function call = (Ast.Expression.Function) ast;
+            Ast.Function callee = functions.get(analysis.getFunction(call));
+            for (int i = 0; i < call.getArguments().size(); i++) {
+                if (scan(call.getArguments().get(i)) && callee != null) {
+                    changed |= parameters.computeIfAbsent(analysis.getFunction(call), f -> new HashSet<>())
+                            .add(callee.getParameters().get(i));
+                }
+            }
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            for (Ast.Expression value : ((Ast.Expression.PlcList) ast).getValues()) {
+                if (scan(value)) {
+                    changed |= !elements;
+                    elements = true;
+                }
+            }
+        }
+        return mayBeNil(ast);
+    }
+
+}
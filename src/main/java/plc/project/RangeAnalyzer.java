@@ -0,0 +1,527 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Computes an interval of possible values for every Integer expression of an
+ * analysed source and, from it, the narrowest representation that can hold
+ * the value without overflow ({@code int}, {@code long} or {@link
+ * BigInteger}).
+ *
+ * Ranges are tracked for locals and parameters only. Parameters, globals,
+ * list elements and call results are unbounded, and comparisons against a
+ * local in {@code IF} and {@code WHILE} conditions narrow it in the
+ * corresponding branch. Loops are iterated to a fixed point, widening bounds
+ * that keep growing to infinity, followed by one narrowing step, so counters
+ * such as {@code WHILE i < 10 DO ... i = i + 1; END} keep a finite range.
+ *
+ * Operations that may throw (division by zero, negative exponents) are
+ * assumed not to, since no value is produced when they do.
+ */
+public final class RangeAnalyzer implements Ast.Visitor<RangeAnalyzer.Interval> {
+
+    private static final BigInteger INT_MIN = BigInteger.valueOf(Integer.MIN_VALUE);
+    private static final BigInteger INT_MAX = BigInteger.valueOf(Integer.MAX_VALUE);
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+    private static final int MAX_EXPONENT = 64;
+    private static final int WIDEN_AFTER = 2;
+
+    private final Analysis analysis;
+    private final Map<Ast.Expression, Interval> ranges = new IdentityHashMap<>();
+    private Map<Environment.Variable, Interval> state = new IdentityHashMap<>();
+
+    public RangeAnalyzer() {
+        this(null);
+    }
+
+    public RangeAnalyzer(Analysis analysis) {
+        this.analysis = Analysis.of(analysis);
+    }
+
+    /**
+     * Returns the range of an Integer expression.
+     */
+    public Interval getRange(Ast.Expression ast) {
+        Interval range = ranges.get(ast);
+        if (range == null) {
+            throw new IllegalStateException("range is uninitialized");
+        }
+        return range;
+    }
+
+    public Representation getRepresentation(Ast.Expression ast) {
+        return getRange(ast).getRepresentation();
+    }
+
+    private Interval record(Ast.Expression ast, Interval range) {
+        if (range != null) {
+            ranges.put(ast, range);
+        }
+        return range;
+    }
+
+    @Override
+    public Interval visit(Ast.Source ast) {
+        ast.getGlobals().forEach(this::visit);
+        ast.getFunctions().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Global ast) {
+        state = new IdentityHashMap<>();
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Function ast) {
+        state = new IdentityHashMap<>();
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.Declaration ast) {
+        Interval value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : null;
+        state.put(analysis.getVariable(ast), value == null ? Interval.TOP : value);
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.Assignment ast) {
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        receiver.getOffset().ifPresent(this::visit);
+        Interval value = visit(ast.getValue());
+        if (receiver.getOffset().isEmpty() && !analysis.getAddress(receiver).isGlobal()) {
+            state.put(analysis.getVariable(receiver), value == null ? Interval.TOP : value);
+        }
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        Map<Environment.Variable, Interval> before = state;
+        state = refine(before, ast.getCondition(), true);
+        ast.getThenStatements().forEach(this::visit);
+        Map<Environment.Variable, Interval> then = state;
+        state = refine(before, ast.getCondition(), false);
+        ast.getElseStatements().forEach(this::visit);
+        state = join(then, state);
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.Switch ast) {
+        visit(ast.getCondition());
+        Map<Environment.Variable, Interval> before = state;
+        Map<Environment.Variable, Interval> after = before;
+        for (Ast.Statement.Case c : ast.getCases()) {
+            state = new IdentityHashMap<>(before);
+            visit(c);
+            after = join(after, state);
+        }
+        state = after;
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.Case ast) {
+        ast.getValue().ifPresent(this::visit);
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    /**
+     * Iterates the loop body from the entry state until the state at the loop
+     * head is stable, widening after {@link #WIDEN_AFTER} rounds, then narrows
+     * once and makes a final pass so the recorded ranges are those of the
+     * narrowed head state.
+     */
+    @Override
+    public Interval visit(Ast.Statement.While ast) {
+        Map<Environment.Variable, Interval> entry = state;
+        Map<Environment.Variable, Interval> head = entry;
+        for (int round = 0; ; round++) {
+            Map<Environment.Variable, Interval> next = join(entry, iterate(ast, head));
+            if (within(next, head)) {
+                break;
+            }
+            head = round >= WIDEN_AFTER ? widen(head, next) : next;
+        }
+        head = join(entry, iterate(ast, head));
+        iterate(ast, head);
+        state = refine(head, ast.getCondition(), false);
+        return null;
+    }
+
+    private Map<Environment.Variable, Interval> iterate(Ast.Statement.While ast, Map<Environment.Variable, Interval> head) {
+        state = head;
+        visit(ast.getCondition());
+        state = refine(head, ast.getCondition(), true);
+        ast.getStatements().forEach(this::visit);
+        return state;
+    }
+
+    @Override
+    public Interval visit(Ast.Statement.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Literal ast) {
+        if (ast.getLiteral() instanceof BigInteger) {
+            return record(ast, Interval.of((BigInteger) ast.getLiteral()));
+        }
+        return null;
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Group ast) {
+        return record(ast, visit(ast.getExpression()));
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Binary ast) {
+        Interval left = visit(ast.getLeft());
+        Interval right = visit(ast.getRight());
+        if (!analysis.getType(ast).equals(Environment.Type.INTEGER)) {
+            return null;
+        }
+        switch (ast.getOperator()) {
+            case "+": return record(ast, left.add(right));
+            case "-": return record(ast, left.subtract(right));
+            case "*": return record(ast, left.multiply(right));
+            case "/": return record(ast, left.divide(right));
+            case "^": return record(ast, left.power(right));
+            default: return record(ast, Interval.TOP);
+        }
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Access ast) {
+        ast.getOffset().ifPresent(this::visit);
+        if (!analysis.getType(ast).equals(Environment.Type.INTEGER)) {
+            return null;
+        }
+        if (ast.getOffset().isEmpty() && !analysis.getAddress(ast).isGlobal()) {
+            return record(ast, state.getOrDefault(analysis.getVariable(ast), Interval.TOP));
+        }
+        return record(ast, Interval.TOP);
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        return analysis.getType(ast).equals(Environment.Type.INTEGER) ? record(ast, Interval.TOP) : null;
+    }
+
+    @Override
+    public Interval visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        return null;
+    }
+
+    /**
+     * Returns {@code state} narrowed by {@code condition} having the given
+     * outcome. The ranges of the operands are those recorded when the
+     * condition was last visited, which must have been in {@code state}.
+     */
+    private Map<Environment.Variable, Interval> refine(Map<Environment.Variable, Interval> state, Ast.Expression condition, boolean outcome) {
+        Map<Environment.Variable, Interval> refined = new IdentityHashMap<>(state);
+        if (!(condition instanceof Ast.Expression.Binary)) {
+            return refined;
+        }
+        Ast.Expression.Binary binary = (Ast.Expression.Binary) condition;
+        String op = binary.getOperator();
+        if ((op.equals("&&") && outcome) || (op.equals("||") && !outcome)) {
+            refined = refine(refined, binary.getLeft(), outcome);
+            return refine(refined, binary.getRight(), outcome);
+        }
+        if (op.equals(">")) {
+            // a > b is b < a
+            return refine(refined, binary.getRight(), binary.getLeft(), outcome);
+        } else if (op.equals("<")) {
+            return refine(refined, binary.getLeft(), binary.getRight(), outcome);
+        }
+        return refined;
+    }
+
+    /**
+     * Narrows locals in {@code smaller < larger} (or its negation).
+     */
+    private Map<Environment.Variable, Interval> refine(Map<Environment.Variable, Interval> state, Ast.Expression smaller, Ast.Expression larger, boolean outcome) {
+        Interval low = ranges.get(smaller);
+        Interval high = ranges.get(larger);
+        if (low == null || high == null) {
+            return state;
+        }
+        BigInteger strict = outcome ? BigInteger.ONE : BigInteger.ZERO;
+        if (tracked(smaller)) {
+            Environment.Variable variable = analysis.getVariable(smaller);
+            Interval current = state.getOrDefault(variable, Interval.TOP);
+            if (outcome) {
+                state.put(variable, current.atMost(high.upper == null ? null : high.upper.subtract(strict)));
+            } else {
+                state.put(variable, current.atLeast(high.lower));
+            }
+        }
+        if (tracked(larger)) {
+            Environment.Variable variable = analysis.getVariable(larger);
+            Interval current = state.getOrDefault(variable, Interval.TOP);
+            if (outcome) {
+                state.put(variable, current.atLeast(low.lower == null ? null : low.lower.add(strict)));
+            } else {
+                state.put(variable, current.atMost(low.upper));
+            }
+        }
+        return state;
+    }
+
+    private boolean tracked(Ast.Expression ast) {
+        return ast instanceof Ast.Expression.Access
+                && ((Ast.Expression.Access) ast).getOffset().isEmpty()
+                && !analysis.getAddress((Ast.Expression.Access) ast).isGlobal();
+    }
+
+    private static Map<Environment.Variable, Interval> join(Map<Environment.Variable, Interval> left, Map<Environment.Variable, Interval> right) {
+        Map<Environment.Variable, Interval> joined = new IdentityHashMap<>();
+        for (Map.Entry<Environment.Variable, Interval> entry : left.entrySet()) {
+            Interval other = right.get(entry.getKey());
+            if (other != null) {
+                joined.put(entry.getKey(), entry.getValue().join(other));
+            }
+        }
+        return joined;
+    }
+
+    /**
+     * Returns whether every range in {@code inner} lies within the matching
+     * range of {@code outer}; a missing variable is unbounded.
+     */
+    private static boolean within(Map<Environment.Variable, Interval> inner, Map<Environment.Variable, Interval> outer) {
+        for (Map.Entry<Environment.Variable, Interval> entry : outer.entrySet()) {
+            if (!entry.getValue().contains(inner.getOrDefault(entry.getKey(), Interval.TOP))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<Environment.Variable, Interval> widen(Map<Environment.Variable, Interval> previous, Map<Environment.Variable, Interval> next) {
+        Map<Environment.Variable, Interval> widened = new IdentityHashMap<>();
+        for (Map.Entry<Environment.Variable, Interval> entry : next.entrySet()) {
+            Interval old = previous.get(entry.getKey());
+            widened.put(entry.getKey(), old == null ? Interval.TOP : old.widen(entry.getValue()));
+        }
+        return widened;
+    }
+
+    /**
+     * The narrowest type that can hold every value of an interval.
+     */
+    public enum Representation {
+        INT,
+        LONG,
+        BIG_INTEGER
+    }
+
+    /**
+     * A closed interval of integers. A {@code null} bound is unbounded.
+     */
+    public static final class Interval {
+
+        public static final Interval TOP = new Interval(null, null);
+
+        private final BigInteger lower;
+        private final BigInteger upper;
+
+        public Interval(BigInteger lower, BigInteger upper) {
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        public static Interval of(BigInteger value) {
+            return new Interval(value, value);
+        }
+
+        public static Interval of(long lower, long upper) {
+            return new Interval(BigInteger.valueOf(lower), BigInteger.valueOf(upper));
+        }
+
+        public BigInteger getLower() {
+            return lower;
+        }
+
+        public BigInteger getUpper() {
+            return upper;
+        }
+
+        public boolean isBounded() {
+            return lower != null && upper != null;
+        }
+
+        public Representation getRepresentation() {
+            if (within(INT_MIN, INT_MAX)) {
+                return Representation.INT;
+            } else if (within(LONG_MIN, LONG_MAX)) {
+                return Representation.LONG;
+            }
+            return Representation.BIG_INTEGER;
+        }
+
+        private boolean within(BigInteger min, BigInteger max) {
+            return isBounded() && lower.compareTo(min) >= 0 && upper.compareTo(max) <= 0;
+        }
+
+        boolean contains(Interval other) {
+            return (lower == null || (other.lower != null && lower.compareTo(other.lower) <= 0))
+                    && (upper == null || (other.upper != null && upper.compareTo(other.upper) >= 0));
+        }
+
+        Interval join(Interval other) {
+            return new Interval(lower == null || other.lower == null ? null : lower.min(other.lower),
+                    upper == null || other.upper == null ? null : upper.max(other.upper));
+        }
+
+        /**
+         * Drops any bound that {@code next} moves outwards.
+         */
+        Interval widen(Interval next) {
+            return new Interval(lower == null || next.lower == null || next.lower.compareTo(lower) < 0 ? null : lower,
+                    upper == null || next.upper == null || next.upper.compareTo(upper) > 0 ? null : upper);
+        }
+
+        Interval atLeast(BigInteger bound) {
+            if (bound == null || (lower != null && lower.compareTo(bound) >= 0) || (upper != null && upper.compareTo(bound) < 0)) {
+                return this;
+            }
+            return new Interval(bound, upper);
+        }
+
+        Interval atMost(BigInteger bound) {
+            if (bound == null || (upper != null && upper.compareTo(bound) <= 0) || (lower != null && lower.compareTo(bound) > 0)) {
+                return this;
+            }
+            return new Interval(lower, bound);
+        }
+
+        Interval add(Interval other) {
+            return new Interval(lower == null || other.lower == null ? null : lower.add(other.lower),
+                    upper == null || other.upper == null ? null : upper.add(other.upper));
+        }
+
+        Interval subtract(Interval other) {
+            return new Interval(lower == null || other.upper == null ? null : lower.subtract(other.upper),
+                    upper == null || other.lower == null ? null : upper.subtract(other.lower));
+        }
+
+        Interval multiply(Interval other) {
+            if (isZero() || other.isZero()) {
+                return of(BigInteger.ZERO);
+            } else if (!isBounded() || !other.isBounded()) {
+                return TOP;
+            }
+            return corners(lower.multiply(other.lower), lower.multiply(other.upper),
+                    upper.multiply(other.lower), upper.multiply(other.upper));
+        }
+
+        /**
+         * Truncating division; a divisor of zero throws, so it is excluded.
+         * Negative and positive divisors are handled apart, so a divisor
+         * refined to {@code [1, +inf]} keeps the sign of the dividend.
+         */
+        Interval divide(Interval other) {
+            if (!isBounded()) {
+                return TOP;
+            }
+            Interval result = null;
+            if (other.lower == null || other.lower.signum() < 0) {
+                result = quotients(other.lower, other.upper == null ? BigInteger.ONE.negate() : other.upper.min(BigInteger.ONE.negate()));
+            }
+            if (other.upper == null || other.upper.signum() > 0) {
+                Interval positive = quotients(other.lower == null ? BigInteger.ONE : other.lower.max(BigInteger.ONE), other.upper);
+                result = result == null ? positive : result.join(positive);
+            }
+            return result == null ? TOP : result;
+        }
+
+        /**
+         * Returns the quotients by divisors of one sign between {@code low}
+         * and {@code high}; an unbounded end stands for divisors large
+         * enough that the quotient is zero.
+         */
+        private Interval quotients(BigInteger low, BigInteger high) {
+            return corners(quotient(lower, low), quotient(lower, high), quotient(upper, low), quotient(upper, high));
+        }
+
+        private static BigInteger quotient(BigInteger dividend, BigInteger divisor) {
+            return divisor == null ? BigInteger.ZERO : dividend.divide(divisor);
+        }
+
+        /**
+         * Exponentiation as {@link BigInteger#pow(int)}; negative exponents
+         * throw, so they are excluded.
+         */
+        Interval power(Interval other) {
+            if (!isBounded() || other.upper == null || other.upper.compareTo(BigInteger.valueOf(MAX_EXPONENT)) > 0 || other.upper.signum() < 0) {
+                return TOP;
+            }
+            int from = other.lower == null || other.lower.signum() < 0 ? 0 : other.lower.intValue();
+            Interval result = null;
+            for (int exponent = from; exponent <= other.upper.intValue(); exponent++) {
+                Interval values = corners(lower.pow(exponent), upper.pow(exponent));
+                if (lower.signum() <= 0 && upper.signum() >= 0) {
+                    values = values.join(of(BigInteger.ZERO.pow(exponent)));
+                }
+                result = result == null ? values : result.join(values);
+            }
+            return result;
+        }
+
+        private boolean isZero() {
+            return lower != null && upper != null && lower.signum() == 0 && upper.signum() == 0;
+        }
+
+        private static Interval corners(BigInteger... values) {
+            BigInteger min = values[0];
+            BigInteger max = values[0];
+            for (BigInteger value : values) {
+                min = min.min(value);
+                max = max.max(value);
+            }
+            return new Interval(min, max);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Interval &&
+                    Objects.equals(lower, ((Interval) obj).lower) &&
+                    Objects.equals(upper, ((Interval) obj).upper);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lower, upper);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + (lower == null ? "-inf" : lower) + ", " + (upper == null ? "+inf" : upper) + "]";
+        }
+
+    }
+
+}
@@ -1,6 +1,7 @@
 package plc.project;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -8,9 +9,23 @@ import java.util.function.Function;
 
 public final class Scope {
 
+    /**
+     * Scopes with at most this many variables (or function names) are
+     * searched linearly; larger ones also keep a hash index. Most scopes the
+     * interpreter creates hold zero to two entries, so storage is allocated
+     * on first definition.
+     */
+    private static final int LINEAR_LIMIT = 8;
+
     private final Scope parent;
-    private final Map<String, Environment.Variable> variables = new HashMap<>();
-    private final Map<String, Environment.Function> functions = new HashMap<>();
+    private String[] variableNames;
+    private Environment.Variable[] variables;
+    private Map<String, Integer> variableIndex;
+    private int variableCount;
+    private String[] functionNames;
+    private Environment.Function[][] functions;
+    private Map<String, Integer> functionIndex;
+    private int functionCount;
 
     public Scope(Scope parent) {
         this.parent = parent;
@@ -25,23 +40,41 @@ public final class Scope {
     }
 
     public Environment.Variable defineVariable(String name, String jvmName, Environment.Type type, boolean mutable, Environment.PlcObject value) {
-        if (variables.containsKey(name)) {
+        if (getSlot(name) != -1) {
             throw new RuntimeException("The variable " + name + " is already defined in this scope.");
         } else {
             Environment.Variable variable = new Environment.Variable(name, jvmName, type, mutable, value);
-            variables.put(variable.getName(), variable);
-            return variables.get(name);
+            if (variables == null) {
+                variableNames = new String[2];
+                variables = new Environment.Variable[2];
+            } else if (variableCount == variables.length) {
+                variableNames = Arrays.copyOf(variableNames, variableCount * 2);
+                variables = Arrays.copyOf(variables, variableCount * 2);
+            }
+            variableNames[variableCount] = name;
+            variables[variableCount] = variable;
+            variableIndex = index(variableIndex, variableNames, variableCount);
+            variableCount++;
+            return variable;
         }
     }
 
     public Environment.Variable lookupVariable(String name) {
-        if (variables.containsKey(name)) {
-            return variables.get(name);
-        } else if (parent != null) {
-            return parent.lookupVariable(name);
-        } else {
-            throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            int slot = scope.getSlot(name);
+            if (slot != -1) {
+                return scope.variables[slot];
+            }
         }
+        throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+    }
+
+    /**
+     * Returns the slot (definition order) of a variable defined directly in
+     * this scope, or {@code -1} if it is not defined here.
+     */
+    public int getSlot(String name) {
+        return find(variableIndex, variableNames, variableCount, name);
     }
 
     public void defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
@@ -53,31 +86,108 @@ public final class Scope {
     }
 
     public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        if (functions.containsKey(name + "/" + parameterTypes.size())) {
-            throw new RuntimeException("The function " + name + "/" + parameterTypes.size() + " is already defined in this scope.");
+        int arity = parameterTypes.size();
+        int position = find(functionIndex, functionNames, functionCount, name);
+        Environment.Function[] overloads = position == -1 ? null : functions[position];
+        if (overloads != null && arity < overloads.length && overloads[arity] != null) {
+            throw new RuntimeException("The function " + name + "/" + arity + " is already defined in this scope.");
         } else {
+            if (position == -1) {
+                if (functions == null) {
+                    functionNames = new String[2];
+                    functions = new Environment.Function[2][];
+                } else if (functionCount == functions.length) {
+                    functionNames = Arrays.copyOf(functionNames, functionCount * 2);
+                    functions = Arrays.copyOf(functions, functionCount * 2);
+                }
+                position = functionCount;
+                functionNames[position] = name;
+                functionIndex = index(functionIndex, functionNames, position);
+                functionCount++;
+            }
+            if (overloads == null || arity >= overloads.length) {
+                overloads = overloads == null ? new Environment.Function[arity + 1] : Arrays.copyOf(overloads, arity + 1);
+                functions[position] = overloads;
+            }
             Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
-            functions.put(func.getName() + "/" + func.getParameterTypes().size(), func);
+            overloads[arity] = func;
             return func;
         }
     }
 
+    /**
+     * Looks up a function by name and arity. Functions are stored by name in
+     * an array indexed by arity, so each scope level costs one name probe.
+     */
     public Environment.Function lookupFunction(String name, int arity) {
-        if (functions.containsKey(name + "/" + arity)) {
-            return functions.get(name + "/" + arity);
-        } else if (parent != null) {
-            return parent.lookupFunction(name, arity);
-        } else {
-            throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            int position = find(scope.functionIndex, scope.functionNames, scope.functionCount, name);
+            if (position != -1) {
+                Environment.Function[] overloads = scope.functions[position];
+                if (arity < overloads.length && overloads[arity] != null) {
+                    return overloads[arity];
+                }
+            }
+        }
+        throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+    }
+
+    private static int find(Map<String, Integer> index, String[] names, int count, String name) {
+        if (index != null) {
+            Integer position = index.get(name);
+            return position == null ? -1 : position;
+        }
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records {@code names[position]} in the hash index, building the index
+     * once the scope outgrows {@link #LINEAR_LIMIT}.
+     */
+    private static Map<String, Integer> index(Map<String, Integer> index, String[] names, int position) {
+        if (index != null) {
+            index.put(names[position], position);
+        } else if (position >= LINEAR_LIMIT) {
+            index = new HashMap<>();
+            for (int i = 0; i <= position; i++) {
+                index.put(names[i], i);
+            }
+        }
+        return index;
+    }
+
+    private List<String> variableNames() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < variableCount; i++) {
+            names.add(variableNames[i]);
+        }
+        return names;
+    }
+
+    private List<String> functionNames() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < functionCount; i++) {
+            Environment.Function[] overloads = functions[i];
+            for (int arity = 0; arity < overloads.length; arity++) {
+                if (overloads[arity] != null) {
+                    names.add(functionNames[i] + "/" + arity);
+                }
+            }
         }
+        return names;
     }
 
     @Override
     public String toString() {
         return "Scope{" +
                 "parent=" + parent +
-                ", variables=" + variables.keySet() +
-                ", functions=" + functions.keySet() +
+                ", variables=" + variableNames() +
+                ", functions=" + functionNames() +
                 '}';
     }
 
@@ -0,0 +1,156 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.Optional;
+
+/**
+ * Replaces exponentiation and repeated addition of a variable with cheaper
+ * arithmetic. The interpreter evaluates {@code ^} with {@link
+ * BigInteger#pow} and generated code with {@code Math.pow} in {@code
+ * double}; a small constant power of a variable becomes a chain of
+ * multiplications instead:
+ *
+ * <pre>
+ * x ^ 0  =>  1        x ^ 1  =>  x        x ^ 3  =>  x * x * x
+ * </pre>
+ *
+ * and a sum of the same Integer variable becomes one multiplication, with
+ * {@code x + x} rewritten to {@code x * 2} and {@code x * 2 + x} to {@code
+ * x * 3}. Sums of Decimals are left alone, as doubling a {@link
+ * java.math.BigDecimal} by multiplication changes its scale, and so are
+ * sums of Strings, which concatenate.
+ *
+ * Only a variable without an offset is repeated or dropped, as reading it
+ * has no effect. Repeating it keeps any failure, as a multiplication throws
+ * on NIL just as the power does, but {@code x ^ 0} and {@code x ^ 1} would
+ * no longer fail, so they are only reduced if x cannot be NIL (see {@link
+ * NilAnalysis}). Groups left around a variable or literal are removed, as
+ * the {@link Analyzer} only accepts grouped operators.
+ *
+ * The AST has no shift operator to lower multiplication and division by
+ * powers of two to, so those are kept.
+ */
+public final class StrengthReducer extends AstRewriter {
+
+    private static final int MAX_POWER = 3;
+
+    private final Analysis analysis;
+    private NilAnalysis nils = NilAnalysis.unknown();
+    private int reductions = 0;
+
+    public StrengthReducer() {
+        this(null);
+    }
+
+    public StrengthReducer(Analysis analysis) {
+        this.analysis = Analysis.of(analysis);
+    }
+
+    /**
+     * Returns the number of expressions replaced so far.
+     */
+    public int getReductionCount() {
+        return reductions;
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        nils = NilAnalysis.of(ast, analysis);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Group ast) {
+        Ast.Expression expression = rewrite(ast.getExpression());
+        if (!(expression instanceof Ast.Expression.Binary)) {
+            return expression;
+        }
+        return expression == ast.getExpression() ? ast : new Ast.Expression.Group(expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        Ast.Expression left = rewrite(ast.getLeft());
+        Ast.Expression right = rewrite(ast.getRight());
+        Ast.Expression reduced = null;
+        if (ast.getOperator().equals("^")) {
+            reduced = power(left, right);
+        } else if (ast.getOperator().equals("+")) {
+            reduced = sum(left, right);
+        }
+        if (reduced != null) {
+            reductions++;
+            return reduced;
+        }
+        if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        return new Ast.Expression.Binary(ast.getOperator(), left, right);
+    }
+
+    /**
+     * Returns {@code base ^ exponent} as multiplications, or {@code null}.
+     * No group is needed, as {@code ^} and {@code *} share a precedence.
+     */
+    private Ast.Expression power(Ast.Expression base, Ast.Expression exponent) {
+        BigInteger power = integer(exponent);
+        if (!variable(base) || power == null || power.signum() < 0 || power.compareTo(BigInteger.valueOf(MAX_POWER)) > 0
+                || (power.compareTo(BigInteger.ONE) <= 0 && nils.mayBeNil(base))) {
+            return null;
+        } else if (power.signum() == 0) {
+            return new Ast.Expression.Literal(BigInteger.ONE);
+        }
+        Ast.Expression result = base;
+        for (int i = 1; i < power.intValue(); i++) {
+            result = new Ast.Expression.Binary("*", result, new Ast.Expression.Access(Optional.empty(), ((Ast.Expression.Access) base).getName()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code left + right} as a multiplication if both are
+     * multiples of the same Integer variable, or {@code null}.
+     */
+    private Ast.Expression sum(Ast.Expression left, Ast.Expression right) {
+        Ast.Expression.Access variable = term(left);
+        if (variable == null || !variable.equals(term(right)) || analysis.getType(variable) != Environment.Type.INTEGER) {
+            return null;
+        }
+        BigInteger count = multiple(left).add(multiple(right));
+        if (count.bitLength() >= Integer.SIZE) {
+            return null;
+        }
+        return new Ast.Expression.Binary("*", variable, new Ast.Expression.Literal(count));
+    }
+
+    /**
+     * Returns the variable of {@code x} or {@code x * n}, or {@code null}.
+     */
+    private Ast.Expression.Access term(Ast.Expression ast) {
+        if (variable(ast)) {
+            return (Ast.Expression.Access) ast;
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            if (binary.getOperator().equals("*") && variable(binary.getLeft()) && integer(binary.getRight()) != null) {
+                return (Ast.Expression.Access) binary.getLeft();
+            }
+        }
+        return null;
+    }
+
+    private BigInteger multiple(Ast.Expression ast) {
+        return variable(ast) ? BigInteger.ONE : integer(((Ast.Expression.Binary) ast).getRight());
+    }
+
+    private static boolean variable(Ast.Expression ast) {
+        return ast instanceof Ast.Expression.Access && ((Ast.Expression.Access) ast).getOffset().isEmpty();
+    }
+
+    private static BigInteger integer(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) ast).getLiteral() instanceof BigInteger) {
+            return (BigInteger) ((Ast.Expression.Literal) ast).getLiteral();
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,136 @@
+package plc.project;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+
+/**
+ * A token list stored outside the GC heap. Each token is a fixed 12 byte
+ * record (type ordinal, index, length) in a direct {@link ByteBuffer}; the
+ * literal is not copied but re-read from the source when a {@link Token} is
+ * materialized by {@link #get(int)}.
+ *
+ * Only the token records are kept off the heap. The source is an ordinary
+ * {@code String}, every {@link #get(int)} allocates a {@link Token}, and the
+ * {@link Parser} builds the AST on the heap, so a compilation through this
+ * buffer allocates about as much on the heap as one through {@link
+ * Lexer#lex()}.
+ *
+ * The buffer is only valid until {@link #close()}, which frees the storage
+ * immediately; every access after that throws an {@link
+ * IllegalStateException}. Storage outgrown by {@link #add(Token)} is freed
+ * as soon as it has been copied. Like the other lists it is not safe for
+ * concurrent use, and it must not be closed while another thread reads it.
+ */
+public final class TokenBuffer extends AbstractList<Token> implements AutoCloseable {
+
+    private static final int RECORD = 3 * Integer.BYTES;
+    private static final int MAX_RECORDS = Integer.MAX_VALUE / RECORD;
+    private static final int MAX_GROWTH = 1 << 22;
+    private static final Token.Type[] TYPES = Token.Type.values();
+    private static final Unsafe UNSAFE = unsafe();
+
+    private final String source;
+    private ByteBuffer buffer;
+    private int size = 0;
+
+    public TokenBuffer(String source) {
+        this(source, 64);
+    }
+
+    public TokenBuffer(String source, int capacity) {
+        if (capacity > MAX_RECORDS) {
+            throw new IllegalArgumentException("A token buffer holds at most " + MAX_RECORDS + " tokens.");
+        }
+        this.source = source;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(capacity, 1) * RECORD);
+    }
+
+    @Override
+    public boolean add(Token token) {
+        ByteBuffer buffer = open();
+        if (!source.startsWith(token.getLiteral(), token.getIndex())) {
+            throw new IllegalArgumentException("Token " + token + " does not match the source.");
+        }
+        if (size == buffer.capacity() / RECORD) {
+            this.buffer = buffer = grow(buffer);
+        }
+        int offset = size * RECORD;
+        buffer.putInt(offset, token.getType().ordinal());
+        buffer.putInt(offset + Integer.BYTES, token.getIndex());
+        buffer.putInt(offset + 2 * Integer.BYTES, token.getLiteral().length());
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Token get(int index) {
+        ByteBuffer buffer = open();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size + ".");
+        }
+        int offset = index * RECORD;
+        int start = buffer.getInt(offset + Integer.BYTES);
+        int length = buffer.getInt(offset + 2 * Integer.BYTES);
+        return new Token(TYPES[buffer.getInt(offset)], source.substring(start, start + length), start);
+    }
+
+    @Override
+    public int size() {
+        open();
+        return size;
+    }
+
+    /**
+     * Frees the off-heap storage. Closing a closed buffer has no effect.
+     */
+    @Override
+    public void close() {
+        if (buffer != null) {
+            ByteBuffer closed = buffer;
+            buffer = null;
+            UNSAFE.invokeCleaner(closed);
+        }
+    }
+
+    private ByteBuffer open() {
+        if (buffer == null) {
+            throw new IllegalStateException("The token buffer is closed.");
+        }
+        return buffer;
+    }
+
+    /**
+     * Copies the records into larger storage and frees the old storage. The
+     * capacity doubles, but by at most {@code MAX_GROWTH} records at a time,
+     * and never past {@code MAX_RECORDS}.
+     */
+    private ByteBuffer grow(ByteBuffer buffer) {
+        if (size == MAX_RECORDS) {
+            throw new IllegalStateException("A token buffer holds at most " + MAX_RECORDS + " tokens.");
+        }
+        long records = Math.min((long) size + Math.min(size, MAX_GROWTH), MAX_RECORDS);
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) (records * RECORD));
+        grown.put(buffer.duplicate().position(0).limit(size * RECORD));
+        UNSAFE.invokeCleaner(buffer);
+        return grown;
+    }
+
+    /**
+     * Returns the JDK's {@link Unsafe}, which is the only way to free a
+     * direct buffer before it becomes unreachable.
+     */
+    private static Unsafe unsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+}
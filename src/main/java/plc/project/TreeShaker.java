@@ -0,0 +1,119 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes the functions that {@code main/0} can never call and the globals
+ * nothing reachable reads. Reachability follows the dependencies the {@link
+ * Analyzer} records in its {@link Analysis}, starting from {@code main/0}
+ * and from every global whose initializer must still run.
+ *
+ * A global is only removed if its initializer cannot have an effect or fail:
+ * it may contain literals, lists and operators other than {@code /} and
+ * {@code ^}, and read globals that have an initializer, but no calls or
+ * indexing. The kept declarations are the original nodes, but removing a
+ * global shifts the slots of the globals after it, so the shaken source must
+ * be analysed again before it is interpreted or generated.
+ */
+public final class TreeShaker {
+
+    private static final String MAIN = "main/0";
+
+    private final Analysis analysis;
+    private final Set<String> reachable = new LinkedHashSet<>();
+    private final Set<String> removed = new LinkedHashSet<>();
+
+    public TreeShaker(Analysis analysis) {
+        this.analysis = analysis;
+    }
+
+    /**
+     * Returns the keys (see {@link Analysis#key}) of the reachable
+     * declarations found by the last {@link #shake(Ast.Source)}.
+     */
+    public Set<String> getReachable() {
+        return Collections.unmodifiableSet(reachable);
+    }
+
+    /**
+     * Returns the keys of the declarations removed by the last {@link
+     * #shake(Ast.Source)}, in source order.
+     */
+    public Set<String> getRemoved() {
+        return Collections.unmodifiableSet(removed);
+    }
+
+    public Ast.Source shake(Ast.Source ast) {
+        reachable.clear();
+        removed.clear();
+        Set<String> initialized = new HashSet<>();
+        Deque<String> worklist = new ArrayDeque<>();
+        worklist.push(MAIN);
+        for (Ast.Global global : ast.getGlobals()) {
+            if (global.getValue().isPresent() && !removable(global.getValue().get(), initialized)) {
+                worklist.push(Analysis.key(global));
+            }
+            if (global.getValue().isPresent()) {
+                initialized.add(global.getName());
+            }
+        }
+        while (!worklist.isEmpty()) {
+            String key = worklist.pop();
+            if (reachable.add(key)) {
+                analysis.getDependencies(key).forEach(worklist::push);
+            }
+        }
+
+        List<Ast.Global> globals = new ArrayList<>();
+        for (Ast.Global global : ast.getGlobals()) {
+            keep(global, Analysis.key(global), globals);
+        }
+        List<Ast.Function> functions = new ArrayList<>();
+        for (Ast.Function function : ast.getFunctions()) {
+            keep(function, Analysis.key(function), functions);
+        }
+        if (removed.isEmpty()) {
+            return ast;
+        }
+        return new Ast.Source(globals, functions);
+    }
+
+    private <T extends Ast> void keep(T ast, String key, List<T> kept) {
+        if (reachable.contains(key)) {
+            kept.add(ast);
+        } else {
+            removed.add(key);
+        }
+    }
+
+    /**
+     * Returns whether evaluating {@code ast} can be skipped without changing
+     * behaviour, given the globals initialized before it.
+     */
+    private static boolean removable(Ast.Expression ast, Set<String> initialized) {
+        if (ast instanceof Ast.Expression.Literal) {
+            return true;
+        } else if (ast instanceof Ast.Expression.Group) {
+            return removable(((Ast.Expression.Group) ast).getExpression(), initialized);
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            return !binary.getOperator().equals("/") && !binary.getOperator().equals("^")
+                    && removable(binary.getLeft(), initialized)
+                    && removable(binary.getRight(), initialized);
+        } else if (ast instanceof Ast.Expression.Access) {
+            Ast.Expression.Access access = (Ast.Expression.Access) ast;
+            return access.getOffset().isEmpty() && initialized.contains(access.getName());
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            return ((Ast.Expression.PlcList) ast).getValues().stream().allMatch(value -> removable(value, initialized));
+        }
+        return false;
+    }
+
+}
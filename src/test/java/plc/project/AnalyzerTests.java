@@ -1,6 +1,7 @@
 package plc.project;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -8,9 +9,12 @@ import org.junit.jupiter.params.provider.MethodSource;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -578,6 +582,198 @@ public final class AnalyzerTests {
         );
     }
 
+    @Test
+    public void testLexicalAddresses() {
+        // VAR a: Integer = 1; VAR b: Integer = 2;
+        // FUN f(x: Integer): Integer DO
+        //     LET y: Integer = x + b;
+        //     WHILE y > 0 DO LET z: Integer = y; y = z - a; END
+        //     RETURN y;
+        // END
+        // FUN main(): Integer DO RETURN f(1); END
+        String input = "VAR a: Integer = 1; VAR b: Integer = 2;\n" +
+                "FUN f(x: Integer): Integer DO\n" +
+                "    LET y: Integer = x + b;\n" +
+                "    WHILE y > 0 DO LET z: Integer = y; y = z - a; END\n" +
+                "    RETURN y;\n" +
+                "END\n" +
+                "FUN main(): Integer DO RETURN f(1); END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Analyzer analyzer = new Analyzer(new Scope(null));
+        analyzer.visit(ast);
+        Analysis analysis = analyzer.getAnalysis();
+
+        Assertions.assertEquals(Environment.Address.global(1), ast.getGlobals().get(1).getAddress());
+        Ast.Function f = ast.getFunctions().get(0);
+        Assertions.assertEquals(List.of(new Environment.Address(0, 0)), f.getParameterAddresses());
+        Assertions.assertEquals(List.of(new Environment.Address(0, 0)), analysis.getParameterAddresses(f));
+
+        Ast.Statement.Declaration y = (Ast.Statement.Declaration) f.getStatements().get(0);
+        Ast.Expression.Binary sum = (Ast.Expression.Binary) y.getValue().get();
+        Assertions.assertEquals(new Environment.Address(0, 1), y.getAddress());
+        Assertions.assertEquals(new Environment.Address(0, 0), analysis.getAddress(sum.getLeft()));
+        Assertions.assertEquals(Environment.Address.global(1), analysis.getAddress(sum.getRight()));
+
+        Ast.Statement.While loop = (Ast.Statement.While) f.getStatements().get(1);
+        Ast.Statement.Declaration z = (Ast.Statement.Declaration) loop.getStatements().get(0);
+        Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) loop.getStatements().get(1);
+        Ast.Expression.Binary difference = (Ast.Expression.Binary) assignment.getValue();
+        Assertions.assertEquals(new Environment.Address(0, 0), z.getAddress());
+        Assertions.assertEquals(new Environment.Address(1, 1), ((Ast.Expression.Access) z.getValue().get()).getAddress());
+        Assertions.assertEquals(new Environment.Address(1, 1), ((Ast.Expression.Access) assignment.getReceiver()).getAddress());
+        Assertions.assertEquals(new Environment.Address(0, 0), ((Ast.Expression.Access) difference.getLeft()).getAddress());
+        Assertions.assertEquals(Environment.Address.global(0), ((Ast.Expression.Access) difference.getRight()).getAddress());
+
+        Ast.Source unannotated = new Parser(new Lexer(input).lex()).parseSource();
+        Analyzer results = new Analyzer(new Scope(null), false);
+        results.visit(unannotated);
+        Ast.Function g = unannotated.getFunctions().get(0);
+        Assertions.assertEquals(List.of(new Environment.Address(0, 0)), results.getAnalysis().getParameterAddresses(g));
+        Assertions.assertThrows(IllegalStateException.class, g::getParameterAddresses);
+    }
+
+    @Test
+    public void testTypeRegistry() {
+        Environment.TypeRegistry first = new Environment.TypeRegistry(Environment.getBaseRegistry());
+        Environment.TypeRegistry second = new Environment.TypeRegistry(Environment.getBaseRegistry());
+        first.registerType(new Environment.Type("Point", "Point", new Scope(Environment.Type.ANY.getScope())));
+
+        // VAR p: Point; FUN main(): Integer DO RETURN 0; END
+        String input = "VAR p: Point; FUN main(): Integer DO RETURN 0; END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertDoesNotThrow(() -> new Analyzer(new Scope(null), first, false).visit(ast));
+        Assertions.assertThrows(RuntimeException.class, () -> new Analyzer(new Scope(null), second, false).visit(ast));
+        Assertions.assertThrows(RuntimeException.class, () -> Environment.getType("Point"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> second.registerType(Environment.Type.INTEGER));
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> Environment.getBaseRegistry().registerType(new Environment.Type("Point", "Point", new Scope(null))));
+    }
+
+    @Test
+    public void testAssignabilityMatrix() {
+        Environment.Type point = new Environment.Type("Point", "Point", new Scope(Environment.Type.ANY.getScope()));
+        Environment.TypeRegistry registry = new Environment.TypeRegistry(Environment.getBaseRegistry());
+        Assertions.assertEquals(-1, registry.getId(point));
+        Assertions.assertTrue(registry.isAssignable(Environment.Type.ANY, point));
+        registry.registerType(point);
+        Assertions.assertEquals(8, registry.getId(point));
+        Assertions.assertEquals(-1, new Environment.TypeRegistry(Environment.getBaseRegistry()).getId(point));
+        Assertions.assertEquals(-1, Environment.getBaseRegistry().getId(point));
+
+        Environment.Type line = new Environment.Type("Line", "Line", new Scope(Environment.Type.ANY.getScope()));
+        Environment.TypeRegistry overlay = new Environment.TypeRegistry(registry);
+        overlay.registerType(line);
+        Assertions.assertEquals(9, overlay.getId(line));
+        Assertions.assertEquals(8, overlay.getId(point));
+
+        List<Environment.Type> comparable = List.of(Environment.Type.INTEGER, Environment.Type.DECIMAL, Environment.Type.CHARACTER, Environment.Type.STRING);
+        List<Environment.Type> types = new ArrayList<>(List.of(Environment.Type.ANY, Environment.Type.NIL, Environment.Type.COMPARABLE, Environment.Type.BOOLEAN));
+        types.addAll(comparable);
+        types.add(point);
+        types.add(line);
+        for (Environment.Type target : types) {
+            for (Environment.Type type : types) {
+                boolean expected = target == type || target == Environment.Type.ANY
+                        || (target == Environment.Type.COMPARABLE && comparable.contains(type));
+                Assertions.assertEquals(expected, overlay.isAssignable(target, type), target.getName() + " <- " + type.getName());
+            }
+        }
+    }
+
+    @Test
+    public void testAssignabilityIds() {
+        Environment.TypeRegistry registry = new Environment.TypeRegistry(Environment.getBaseRegistry());
+        Environment.TypeRegistry overlay = new Environment.TypeRegistry(registry);
+        Environment.Type point = new Environment.Type("Point", "Point", new Scope(Environment.Type.ANY.getScope()));
+        Assertions.assertTrue(overlay.isAssignable(Environment.Type.ANY, Environment.Type.INTEGER));
+        registry.registerType(point);
+        Assertions.assertEquals(8, overlay.getId(point));
+        Assertions.assertTrue(overlay.isAssignable(point, point));
+        Assertions.assertFalse(overlay.isAssignable(point, Environment.Type.ANY));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new Environment.TypeRegistry(Environment.getBaseRegistry()).registerType(point));
+
+        Environment.TypeRegistry other = new Environment.TypeRegistry(Environment.getBaseRegistry());
+        Environment.Type line = new Environment.Type("Line", "Line", new Scope(Environment.Type.ANY.getScope()));
+        other.registerType(line);
+        Assertions.assertEquals(8, other.getId(line));
+        Assertions.assertEquals(-1, overlay.getId(line));
+        Assertions.assertFalse(overlay.isAssignable(point, line));
+    }
+
+    @Test
+    public void testParallel() {
+        // FUN f0(x: Integer): Integer DO RETURN f1(x + 1); END ... FUN f99(x: Integer): Integer DO RETURN x; END
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 99; i++) {
+            input.append("FUN f").append(i).append("(x: Integer): Integer DO RETURN f").append(i + 1).append("(x + 1); END\n");
+        }
+        input.append("FUN f99(x: Integer): Integer DO RETURN x; END\nFUN main(): Integer DO RETURN f0(0); END");
+        Ast.Source ast = new Parser(new Lexer(input.toString()).lex()).parseSource();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Analyzer analyzer = new Analyzer(new Scope(null), false);
+            analyzer.visitParallel(ast, pool);
+            Ast.Statement.Return ret = (Ast.Statement.Return) ast.getFunctions().get(0).getStatements().get(0);
+            Assertions.assertEquals(Environment.Type.INTEGER, analyzer.getAnalysis().getType(ret.getValue()));
+
+            // FUN a(): Integer DO RETURN "a"; END FUN b(): Integer DO RETURN TRUE; END FUN main(): Integer DO RETURN 0; END
+            Ast.Source invalid = new Parser(new Lexer("FUN a(): Integer DO RETURN \"a\"; END FUN b(): Integer DO RETURN TRUE; END FUN main(): Integer DO RETURN 0; END").lex()).parseSource();
+            RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                    () -> new Analyzer(new Scope(null), false).visitParallel(invalid, pool));
+            Assertions.assertEquals(1, exception.getSuppressed().length);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testIncremental() {
+        // VAL n: Integer = 1; FUN f(): Integer DO RETURN g(); END FUN g(): Integer DO RETURN n; END
+        // FUN h(): Integer DO RETURN 0; END FUN main(): Integer DO RETURN f(); END
+        Ast.Source ast = new Parser(new Lexer("VAL n: Integer = 1; FUN f(): Integer DO RETURN g(); END FUN g(): Integer DO RETURN n; END " +
+                "FUN h(): Integer DO RETURN 0; END FUN main(): Integer DO RETURN f(); END").lex()).parseSource();
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(new Scope(null));
+        analyzer.analyze(ast);
+        Assertions.assertEquals(Set.of("n", "f/0", "g/0", "h/0", "main/0"), analyzer.getReanalyzed());
+        Assertions.assertEquals(Set.of("g/0"), analyzer.getAnalysis().getDependencies("f/0"));
+        Assertions.assertEquals(Set.of("n"), analyzer.getAnalysis().getDependencies("g/0"));
+
+        analyzer.analyze(ast);
+        Assertions.assertEquals(Set.of(), analyzer.getReanalyzed());
+
+        // FUN g(): Integer DO RETURN n + 1; END
+        List<Ast.Function> functions = new ArrayList<>(ast.getFunctions());
+        functions.set(1, new Parser(new Lexer("FUN g(): Integer DO RETURN n + 1; END").lex()).parseSource().getFunctions().get(0));
+        Ast.Source edited = new Ast.Source(ast.getGlobals(), functions);
+        Analysis analysis = analyzer.analyze(edited);
+        Assertions.assertEquals(Set.of("g/0", "f/0", "main/0"), analyzer.getReanalyzed());
+        Ast.Statement.Return ret = (Ast.Statement.Return) functions.get(1).getStatements().get(0);
+        Assertions.assertEquals(Environment.Type.INTEGER, analysis.getType(ret.getValue()));
+
+        Ast.Statement.Return stale = (Ast.Statement.Return) functions.get(2).getStatements().get(0);
+
+        // FUN h(): Integer DO RETURN 1; END
+        functions.set(2, new Parser(new Lexer("FUN h(): Integer DO RETURN 1; END").lex()).parseSource().getFunctions().get(0));
+        analysis = analyzer.analyze(new Ast.Source(ast.getGlobals(), functions));
+        Assertions.assertEquals(Set.of("h/0"), analyzer.getReanalyzed());
+        Assertions.assertThrows(IllegalStateException.class, () -> analyzer.getAnalysis().getType(stale.getValue()));
+        Ast.Expression call = ((Ast.Statement.Return) functions.get(0).getStatements().get(0)).getValue();
+        Assertions.assertSame(analysis.getFunction(functions.get(1)), analysis.getFunction(call));
+        Ast.Expression access = ((Ast.Expression.Binary) ((Ast.Statement.Return) functions.get(1).getStatements().get(0)).getValue()).getLeft();
+        Assertions.assertSame(analysis.getVariable(ast.getGlobals().get(0)), analysis.getVariable(access));
+
+        // h removed
+        functions.remove(2);
+        analysis = analyzer.analyze(new Ast.Source(ast.getGlobals(), functions));
+        Assertions.assertEquals(Set.of("n", "f/0", "g/0", "main/0"), analysis.getDeclarations());
+
+        // FUN g(): String DO RETURN "g"; END
+        functions.set(1, new Parser(new Lexer("FUN g(): String DO RETURN \"g\"; END").lex()).parseSource().getFunctions().get(0));
+        Assertions.assertThrows(RuntimeException.class, () -> analyzer.analyze(new Ast.Source(ast.getGlobals(), functions)));
+    }
+
     /**
      * Helper function for tests. If {@param expected} is {@code null}, analysis
      * is expected to throw a {@link RuntimeException}.
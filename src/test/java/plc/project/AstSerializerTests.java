@@ -0,0 +1,122 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class AstSerializerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testRoundTrip(String test, String input) throws IOException {
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        Path path = Files.createTempFile("ast", ".bin");
+        try {
+            AstSerializer.write(source, path);
+            Assertions.assertEquals(source, AstSerializer.read(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static Stream<Arguments> testRoundTrip() {
+        return Stream.of(
+                Arguments.of("Literals",
+                        "LIST list: Decimal = [1.0, 1.50, -2.0]; VAL c: Character = 'c'; VAL big: Integer = 12345678901234567890; FUN main() DO print(\"é\"); END"
+                ),
+                Arguments.of("Statements",
+                        "VAR i: Integer = -1;\nVAL inc: Integer = 2;\nFUN foo() DO\n    WHILE i != 1 DO\n        IF i > 0 DO\n            print(\"bar\");\n        END\n        i = i + inc;\n    END\nEND\n" +
+                        "FUN bar(x: Integer): Boolean DO SWITCH x CASE 1: RETURN TRUE; DEFAULT LET y = x ^ 2; RETURN NIL == y; END END"
+                )
+        );
+    }
+
+    /**
+     * Round-trips the expected sources of the parser tests.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("plc.project.ParserTests#testSource")
+    void testParserCorpus(String test, List<Token> tokens, Ast.Source expected) throws IOException {
+        if (expected != null) {
+            Assertions.assertEquals(expected, roundTrip(expected));
+        }
+    }
+
+    /**
+     * Round-trips the programs of the end-to-end tests.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource({"plc.project.EndToEndInterpreterTests#testSource", "plc.project.EndToEndGeneratorTests#testSource"})
+    void testEndToEndCorpus(String test, String input, Object expected) throws IOException {
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertEquals(source, roundTrip(source));
+    }
+
+    @Test
+    void testUnsupportedVersion() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(serialize("FUN main() DO RETURN 0; END"));
+        buffer.putInt(Integer.BYTES, AstSerializer.VERSION + 1);
+        Assertions.assertThrows(IOException.class, () -> AstSerializer.read(buffer));
+    }
+
+    @Test
+    void testTruncated() throws IOException {
+        byte[] bytes = serialize("VAR x: Integer = 1; FUN main(): Integer DO RETURN x + 2; END");
+        for (int length = 0; length < bytes.length; length++) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            Assertions.assertThrows(IOException.class, () -> AstSerializer.read(buffer), "length " + buffer.limit());
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testCorrupt(String test, int offset, int value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(serialize("VAR x: Integer = 1; FUN main(): Integer DO RETURN x + 2; END"));
+        buffer.putInt(offset, value);
+        Assertions.assertThrows(IOException.class, () -> AstSerializer.read(buffer));
+    }
+
+    private static Stream<Arguments> testCorrupt() {
+        // header: magic, version, flags, node count, child count; then the kinds column
+        // nodes: 0 SOURCE, 1 GLOBAL, 2 LITERAL, 3 FUNCTION, 4 RETURN, 5 BINARY, 6 ACCESS, 7 LITERAL
+        // the children array follows the six columns of eight nodes; BINARY holds [6, 7] at 1
+        int children = (5 + 6 * 8) * Integer.BYTES;
+        return Stream.of(
+                Arguments.of("Negative Node Count", 3 * Integer.BYTES, -1),
+                Arguments.of("Huge Node Count", 3 * Integer.BYTES, Integer.MAX_VALUE),
+                Arguments.of("Negative Child Count", 4 * Integer.BYTES, -1),
+                Arguments.of("Unknown Kind", 5 * Integer.BYTES, 99),
+                Arguments.of("Root Not A Source", 5 * Integer.BYTES, FlatAst.GLOBAL),
+                Arguments.of("Nested Source", (5 + 2) * Integer.BYTES, FlatAst.SOURCE),
+                Arguments.of("Parameter As Value", (5 + 2) * Integer.BYTES, FlatAst.PARAMETER),
+                Arguments.of("Parameter As Operand", (5 + 7) * Integer.BYTES, FlatAst.PARAMETER),
+                Arguments.of("Expression As Statement", (5 + 4) * Integer.BYTES, FlatAst.GROUP),
+                Arguments.of("Statement As Operand", (5 + 7) * Integer.BYTES, FlatAst.RETURN),
+                Arguments.of("Case Outside Switch", (5 + 4) * Integer.BYTES, FlatAst.CASE),
+                Arguments.of("Two Parents", children + 2 * Integer.BYTES, 6)
+        );
+    }
+
+    private static Ast.Source roundTrip(Ast.Source source) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstSerializer.write(source, out);
+        return AstSerializer.read(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    private static byte[] serialize(String input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstSerializer.write(new Parser(new Lexer(input).lex()).parseSource(), out);
+        return out.toByteArray();
+    }
+
+}
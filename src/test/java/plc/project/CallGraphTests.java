@@ -0,0 +1,85 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+final class CallGraphTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "FUN even(n: Integer): Boolean DO IF n == 0 DO RETURN TRUE; END RETURN odd(n - 1); END",
+            "FUN odd(n: Integer): Boolean DO IF n == 0 DO RETURN FALSE; END RETURN even(n - 1); END",
+            "FUN fact(n: Integer): Integer DO IF n == 0 DO RETURN 1; END RETURN n * fact(n - 1); END",
+            "FUN show(n: Integer) DO print(n); END",
+            "FUN main(): Integer DO show(fact(5)); print(even(4)); RETURN 0; END"
+    );
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testCalls(String test, String caller, String expected, boolean recursive) {
+        CallGraph graph = build();
+        Environment.Function function = graph.getFunctions().stream()
+                .filter(f -> f.getName().equals(caller))
+                .findFirst().get();
+        Assertions.assertEquals(expected, graph.getCalls(function).stream()
+                .map(call -> call.getCallee().getName() + (call.isTail() ? "*" : ""))
+                .collect(Collectors.joining(", ")));
+        Assertions.assertEquals(recursive, graph.isRecursive(function));
+    }
+
+    private static Stream<Arguments> testCalls() {
+        return Stream.of(
+                Arguments.of("Mutual Tail Recursion", "even", "odd*", true),
+                Arguments.of("Tail Call", "odd", "even*", true),
+                Arguments.of("Non-Tail Recursion", "fact", "fact", true),
+                Arguments.of("External Call", "show", "print", false),
+                Arguments.of("Nested Calls", "main", "show, fact, print, even", false)
+        );
+    }
+
+    @Test
+    void testComponents() {
+        CallGraph graph = build();
+        List<String> components = graph.getComponents().stream()
+                .map(members -> members.stream().map(Environment.Function::getName).sorted().collect(Collectors.joining(" ")))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(List.of("even odd", "fact", "print", "show", "main"), components);
+        String dot = graph.toDot();
+        Assertions.assertTrue(dot.startsWith("digraph calls {\n"));
+        Assertions.assertTrue(dot.contains("[label=\"print/1\", style=dashed];"));
+        Assertions.assertTrue(dot.contains("subgraph cluster_"));
+        Assertions.assertTrue(dot.contains(" [style=bold];"));
+    }
+
+    @Test
+    void testInitializerCalls() {
+        Scope scope = new Scope(null);
+        scope.defineFunction("seed", "seed", List.of(), Environment.Type.INTEGER, args -> Environment.create(BigInteger.ONE));
+        Ast.Source ast = new Parser(new Lexer("VAR n: Integer = seed(); FUN main(): Integer DO RETURN n; END").lex()).parseSource();
+        Analyzer analyzer = new Analyzer(scope, false);
+        analyzer.visit(ast);
+        CallGraph graph = CallGraph.build(ast, analyzer.getAnalysis());
+        Assertions.assertEquals(1, graph.getInitializerCalls().size());
+        CallGraph.Call call = graph.getInitializerCalls().get(0);
+        Assertions.assertNull(call.getCaller());
+        Assertions.assertEquals("seed", call.getCallee().getName());
+        Assertions.assertEquals(List.of(call), graph.getCallers(call.getCallee()));
+        Assertions.assertEquals(List.of("main", "seed"), graph.getFunctions().stream().map(Environment.Function::getName).collect(Collectors.toList()));
+    }
+
+    private static CallGraph build() {
+        Ast.Source ast = new Parser(new Lexer(PROGRAM).lex()).parseSource();
+        Analyzer analyzer = new Analyzer(new Scope(null), false);
+        analyzer.visitParallel(ast, ForkJoinPool.commonPool());
+        return CallGraph.build(ast, analyzer.getAnalysis());
+    }
+
+}
@@ -0,0 +1,68 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class CommonSubexpressionEliminatorTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "VAR count: Integer = 0;",
+            "LIST xs: Integer = [1, 2, 3];",
+            "FUN sq(n: Integer): Integer DO RETURN n * n; END",
+            "FUN next(): Integer DO count = count + 1; RETURN count; END",
+            "FUN get(l: Integer, j: Integer): Integer DO RETURN l[j]; END",
+            "FUN main(): Integer DO LET x = 3; LET y = 12; LET i = 1; %s END"
+    );
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testEliminate(String test, String body, int eliminated, Object expected) {
+        CommonSubexpressionEliminator eliminator = PassFixture.rewrite(String.format(PROGRAM, body), CommonSubexpressionEliminator::new, expected);
+        Assertions.assertEquals(eliminated, eliminator.getEliminatedCount());
+    }
+
+    private static Stream<Arguments> testEliminate() {
+        return Stream.of(
+                Arguments.of("Repeated Index", "RETURN xs[i] * xs[i];", 1, BigInteger.valueOf(4)),
+                Arguments.of("Across Statements", "LET a = x * y + 1; LET b = x * y + 2; RETURN a + b;", 1, BigInteger.valueOf(75)),
+                Arguments.of("Nested Repeat", "LET a = (x + y) * (x + y); LET b = (x + y) * (x + y); RETURN a - b;", 2, BigInteger.ZERO),
+                Arguments.of("Reassigned", "LET a = x * y; x = 2; LET b = x * y; RETURN a + b;", 0, BigInteger.valueOf(60)),
+                Arguments.of("List Store", "LET a = xs[0] + 1; xs[0] = 5; LET b = xs[0] + 1; RETURN a + b;", 0, BigInteger.valueOf(8)),
+                Arguments.of("Pure Call", "RETURN sq(x) + sq(x);", 1, BigInteger.valueOf(18)),
+                Arguments.of("Call Reads List", "RETURN get(xs, i) + get(xs, i);", 1, BigInteger.valueOf(4)),
+                Arguments.of("List Store Before Call", "LET p = get(xs, 0); xs[0] = 9; LET q = get(xs, 0); RETURN p + q;", 0, BigInteger.valueOf(10)),
+                Arguments.of("Impure Call", "RETURN next() + next();", 0, BigInteger.valueOf(3)),
+                Arguments.of("Global Written By Call", "LET a = count + 1; next(); RETURN a + (count + 1);", 0, BigInteger.valueOf(3)),
+                Arguments.of("Short Circuit", "IF x > 0 && y / x > 1 || y / x > 2 DO RETURN 1; END RETURN 0;", 0, BigInteger.ONE),
+                Arguments.of("Reused In Branch", "LET a = x * y; IF a > 0 DO RETURN x * y; END RETURN 0;", 1, BigInteger.valueOf(36)),
+                Arguments.of("Branch Writes", "LET a = x * y; IF a > 0 DO x = 1; END RETURN x * y;", 0, BigInteger.valueOf(12)),
+                Arguments.of("Loop Condition", "LET a = x * y; WHILE i < x * y DO i = i * 2; END RETURN i + a;", 1, BigInteger.valueOf(100)),
+                Arguments.of("Loop Writes", "LET a = i * 2; WHILE i < 10 DO i = i * 2; END RETURN i * 2 + a;", 0, BigInteger.valueOf(34)),
+                Arguments.of("After Effect", "LET a = next() + y / x; LET b = y / x; RETURN a + b;", 0, BigInteger.valueOf(9)),
+                Arguments.of("Failure Order", "LET a = xs[i] + y / x; RETURN a + y / x;", 0, BigInteger.valueOf(10))
+        );
+    }
+
+    @Test
+    void testTemporary() {
+        Ast.Source original = PassFixture.parse(String.format(PROGRAM, "LET a = 1; a = xs[i] * xs[i]; RETURN a;"));
+        new Analyzer(new Scope(null)).visit(original);
+        Ast.Source rewritten = (Ast.Source) new CommonSubexpressionEliminator().visit(original);
+        List<Ast.Statement> statements = rewritten.getFunctions().get(3).getStatements();
+        Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) statements.get(4);
+        Assertions.assertEquals("$cse0", declaration.getName());
+        Assertions.assertEquals("xs", ((Ast.Expression.Access) declaration.getValue().get()).getName());
+        Ast.Expression.Access temporary = new Ast.Expression.Access(Optional.empty(), "$cse0");
+        Assertions.assertEquals(new Ast.Expression.Binary("*", temporary, temporary),
+                ((Ast.Statement.Assignment) statements.get(5)).getValue());
+    }
+
+}
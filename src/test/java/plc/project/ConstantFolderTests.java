@@ -0,0 +1,102 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.stream.Stream;
+
+final class ConstantFolderTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testFold(String test, String input, Object expected) {
+        Ast.Expression folded = (Ast.Expression) new ConstantFolder().visit(parse(input));
+        if (expected != null) {
+            Assertions.assertEquals(new Ast.Expression.Literal(expected), folded);
+        } else {
+            Assertions.assertFalse(folded instanceof Ast.Expression.Literal, folded.toString());
+        }
+    }
+
+    private static Stream<Arguments> testFold() {
+        return Stream.of(
+                Arguments.of("Integer", "60 * 60 * 24", BigInteger.valueOf(86400)),
+                Arguments.of("Concatenation", "\"prefix\" + \"suffix\"", "prefixsuffix"),
+                Arguments.of("Mixed Concatenation", "\"n=\" + 1.50", "n=1.50"),
+                Arguments.of("Decimal Division", "1.0 / 3.0", new BigDecimal("0.3")),
+                Arguments.of("Group", "(1 + 2) * 3", BigInteger.valueOf(9)),
+                Arguments.of("Comparison", "\"a\" < \"b\"", true),
+                Arguments.of("Decimal Equality", "1.0 == 1.00", false),
+                Arguments.of("Short Circuit And", "FALSE && f()", false),
+                Arguments.of("Short Circuit Or", "TRUE || f()", true),
+                Arguments.of("Power", "2 ^ 10", BigInteger.valueOf(1024)),
+                Arguments.of("Zero Dividend", "0 / 5", null),
+                Arguments.of("Zero Divisor", "5 / 0", null),
+                Arguments.of("Negative Exponent", "2 ^ (0 - 1)", null),
+                Arguments.of("Integer Too Wide", "65536 * 65536", null),
+                Arguments.of("Non-Constant", "x + 1", null),
+                Arguments.of("Non-Short-Circuit", "TRUE && f()", null)
+        );
+    }
+
+    /**
+     * Interprets each expression with and without folding; both must give
+     * the same value or both must throw.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testDifferential(String test, String input) {
+        Ast.Expression original = parse(input);
+        Ast.Expression folded = (Ast.Expression) new ConstantFolder().visit(original);
+        Object expected;
+        try {
+            expected = interpreter().visit(original).getValue();
+        } catch (RuntimeException e) {
+            Assertions.assertThrows(RuntimeException.class, () -> interpreter().visit(folded));
+            return;
+        }
+        Assertions.assertEquals(expected, interpreter().visit(folded).getValue());
+    }
+
+    private static Stream<Arguments> testDifferential() {
+        return Stream.of(
+                Arguments.of("Arithmetic", "1 + 2 * 3 - 4 / 2"),
+                Arguments.of("Decimal Arithmetic", "1.5 * 2.25 - 0.125 / 3.0"),
+                Arguments.of("Half Even", "2.5 / 2.0 + 3.5 / 2.0"),
+                Arguments.of("Concatenation", "\"x\" + 1 + 2.0 + 'c' + TRUE"),
+                Arguments.of("Logic", "(1 < 2) && (\"b\" > \"a\") || FALSE"),
+                Arguments.of("Equality", "1 == 1 && 'a' != 'b'"),
+                Arguments.of("Variable", "x * (60 * 60) + y"),
+                Arguments.of("Short Circuit", "FALSE && (x / 0 == 1)"),
+                Arguments.of("Zero Dividend", "0 / 5 + 1"),
+                Arguments.of("Zero Divisor", "x + 5 / 0"),
+                Arguments.of("Mismatched Types", "1 + 1.0"),
+                Arguments.of("Negative Exponent", "2 ^ (0 - 2)"),
+                Arguments.of("Wide Integer", "65536 * 65536 * x")
+        );
+    }
+
+    @Test
+    void testFoldCount() {
+        ConstantFolder folder = new ConstantFolder();
+        folder.visit(parse("x + 60 * 60 * 24"));
+        Assertions.assertEquals(2, folder.getFoldCount());
+    }
+
+    private static Interpreter interpreter() {
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.getScope().defineVariable("x", true, Environment.create(BigInteger.valueOf(7)));
+        interpreter.getScope().defineVariable("y", true, Environment.create(BigInteger.valueOf(-3)));
+        return interpreter;
+    }
+
+    private static Ast.Expression parse(String input) {
+        return new Parser(new Lexer(input).lex()).parseExpression();
+    }
+
+}
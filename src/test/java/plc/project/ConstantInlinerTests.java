@@ -0,0 +1,96 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.stream.Stream;
+
+final class ConstantInlinerTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "VAL limit: Integer = 10;",
+            "VAL twice: Integer = limit * 2;",
+            "VAL name: String = \"a\" + \"b\";",
+            "VAL half: Decimal = 0.5;",
+            "VAL ratio: Decimal = 1.0 / 4.0;",
+            "VAL huge: Integer = 2147483647 + 1;",
+            "VAR count: Integer = limit;",
+            "FUN main(): Integer DO LET limit = 1; RETURN twice + limit + count; END"
+    );
+
+    @Test
+    void testConstants() {
+        Ast.Source ast = parse(PROGRAM);
+        new Analyzer(new Scope(null)).visit(ast);
+        ConstantInliner inliner = new ConstantInliner();
+        inliner.visit(ast);
+        Assertions.assertEquals(Map.of("limit", BigInteger.valueOf(10), "twice", BigInteger.valueOf(20),
+                "name", "ab", "half", new BigDecimal("0.5")), inliner.getConstants());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testInline(String test, String input, Object expected) {
+        Ast.Source original = parse(input);
+        Analyzer analyzer = new Analyzer(new Scope(null), false);
+        analyzer.visit(original);
+        Ast.Source inlined = (Ast.Source) new ConstantInliner(analyzer.getAnalysis()).visit(original);
+
+        new Analyzer(new Scope(null)).visit(inlined);
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(inlined).getValue());
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(parse(input)).getValue());
+    }
+
+    private static Stream<Arguments> testInline() {
+        return Stream.of(
+                Arguments.of("Shadowed", PROGRAM, BigInteger.valueOf(31)),
+                Arguments.of("Loop Bound",
+                        "VAL n: Integer = 5; FUN main(): Integer DO LET i = 0; WHILE i < n DO i = i + 1; END RETURN i * n; END",
+                        BigInteger.valueOf(25)),
+                Arguments.of("List Index",
+                        "VAL first: Integer = 0; LIST xs: Integer = [7, 8]; FUN main(): Integer DO xs[first] = 3; RETURN xs[first]; END",
+                        BigInteger.valueOf(3))
+        );
+    }
+
+    @Test
+    void testZeroDividend() {
+        Ast.Source original = parse("VAL z: Integer = 0 / 5; FUN main(): Integer DO RETURN z + 1; END");
+        Analyzer analyzer = new Analyzer(new Scope(null), false);
+        analyzer.visit(original);
+        ConstantInliner inliner = new ConstantInliner(analyzer.getAnalysis());
+        Ast.Source inlined = (Ast.Source) inliner.visit(original);
+        Assertions.assertEquals(Map.of(), inliner.getConstants());
+
+        new Analyzer(new Scope(null)).visit(inlined);
+        Assertions.assertThrows(RuntimeException.class, () -> new Interpreter(new Scope(null)).visit(inlined));
+    }
+
+    @Test
+    void testStaticConstants() {
+        Ast.Source ast = parse(PROGRAM);
+        new Analyzer(new Scope(null)).visit(ast);
+        Ast.Source inlined = (Ast.Source) new ConstantInliner().visit(ast);
+        new Analyzer(new Scope(null)).visit(inlined);
+
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer), null, Environment.getDefaultRegistry(), true).visit(inlined);
+        String generated = writer.toString();
+        Assertions.assertTrue(generated.contains("    static final int twice = 20;"), generated);
+        Assertions.assertTrue(generated.contains("    final double ratio = 1.0 / 4.0;"), generated);
+        Assertions.assertTrue(generated.contains("return 20 + limit + count;"), generated);
+    }
+
+    private static Ast.Source parse(String input) {
+        return new Parser(new Lexer(input).lex()).parseSource();
+    }
+
+}
@@ -0,0 +1,59 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+final class EffectAnalyzerTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "VAR count: Integer = 0;",
+            "LIST items: Integer = [1, 2, 3];",
+            "FUN square(x: Integer): Integer DO RETURN x * x; END",
+            "FUN total(): Integer DO RETURN count + square(2); END",
+            "FUN increment() DO count = count + 1; END",
+            "FUN clear(i: Integer) DO items[i] = 0; END",
+            "FUN get(l: Integer, i: Integer): Integer DO RETURN l[i]; END",
+            "FUN head(): Integer DO RETURN get(items, 0); END",
+            "FUN log(x: Integer) DO print(x); END",
+            "FUN even(n: Integer): Boolean DO IF n == 0 DO RETURN TRUE; END RETURN odd(n - 1); END",
+            "FUN odd(n: Integer): Boolean DO IF n == 0 DO RETURN FALSE; END RETURN even(n - 1); END",
+            "FUN countdown(n: Integer) DO IF n > 0 DO log(n); countdown(n - 1); END END",
+            "FUN main(): Integer DO increment(); RETURN total(); END"
+    );
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testEffects(String test, String name, int arity, Set<Environment.Effect> expected) {
+        Ast.Source ast = new Parser(new Lexer(PROGRAM).lex()).parseSource();
+        Analyzer analyzer = new Analyzer(new Scope(null), false);
+        analyzer.visitParallel(ast, ForkJoinPool.commonPool());
+        new EffectAnalyzer(analyzer.getAnalysis()).visit(ast);
+        Environment.Function function = analyzer.getScope().lookupFunction(name, arity);
+        Assertions.assertEquals(expected, function.getEffects());
+        Assertions.assertEquals(expected.isEmpty(), function.isPure());
+    }
+
+    private static Stream<Arguments> testEffects() {
+        return Stream.of(
+                Arguments.of("Pure", "square", 1, EnumSet.noneOf(Environment.Effect.class)),
+                Arguments.of("Reads Globals", "total", 0, EnumSet.of(Environment.Effect.READS_GLOBALS)),
+                Arguments.of("Writes Globals", "increment", 0, EnumSet.of(Environment.Effect.READS_GLOBALS, Environment.Effect.WRITES_GLOBALS)),
+                Arguments.of("Mutates Lists", "clear", 1, EnumSet.of(Environment.Effect.MUTATES_LISTS, Environment.Effect.WRITES_GLOBALS)),
+                Arguments.of("Reads Lists", "get", 2, EnumSet.of(Environment.Effect.READS_LISTS)),
+                Arguments.of("Reads Global List", "head", 0, EnumSet.of(Environment.Effect.READS_GLOBALS, Environment.Effect.READS_LISTS)),
+                Arguments.of("IO", "log", 1, EnumSet.of(Environment.Effect.IO)),
+                Arguments.of("Mutual Recursion", "even", 1, EnumSet.noneOf(Environment.Effect.class)),
+                Arguments.of("Recursive IO", "countdown", 1, EnumSet.of(Environment.Effect.IO)),
+                Arguments.of("Transitive", "main", 0, EnumSet.of(Environment.Effect.READS_GLOBALS, Environment.Effect.WRITES_GLOBALS)),
+                Arguments.of("Builtin", "print", 1, EnumSet.of(Environment.Effect.IO))
+        );
+    }
+
+}
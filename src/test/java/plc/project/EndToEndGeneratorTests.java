@@ -258,6 +258,15 @@ public class EndToEndGeneratorTests {
         analyzer.visit(ast);
         new Generator(new PrintWriter(writer)).visit(ast);
         Assertions.assertEquals(expected, writer.toString());
+
+        // the same program analysed without annotating the AST
+        Ast shared = function.apply(new Parser(new Lexer(input).lex()));
+        Analyzer tableAnalyzer = new Analyzer(new Scope(null), false);
+        tableAnalyzer.visit(shared);
+        Assertions.assertEquals(function.apply(new Parser(new Lexer(input).lex())), shared);
+        StringWriter tableWriter = new StringWriter();
+        new Generator(new PrintWriter(tableWriter), tableAnalyzer.getAnalysis()).visit(shared);
+        Assertions.assertEquals(expected, tableWriter.toString());
     }
 
     /**
@@ -35,6 +35,15 @@ final class EndToEndInterpreterTests {
                 Arguments.of("Globals & No Return",
                         "VAR x: Integer = 1; VAR y: Integer = 10; FUN main() DO x + y; END",
                         Environment.NIL.getValue()
+                ),
+                // FUN fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END
+                // FUN fib(): Integer DO RETURN fib(10); END
+                // FUN main(): Integer DO RETURN fib(); END
+                Arguments.of("Recursion & Overloads",
+                        "FUN fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END " +
+                        "FUN fib(): Integer DO RETURN fib(10); END " +
+                        "FUN main(): Integer DO RETURN fib(); END",
+                        BigInteger.valueOf(55)
                 )
         );
     }
@@ -0,0 +1,72 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+final class EscapeAnalyzerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testEscapes(String test, String body, Set<EscapeAnalyzer.Escape> expected) {
+        String input = "LIST xs: Integer = [1, 2, 3]; FUN f(x: Integer): Integer DO RETURN x; END FUN main(): Integer DO " + body + " RETURN 0; END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Analyzer analyzer = new Analyzer(new Scope(null), false);
+        analyzer.visit(ast);
+        EscapeAnalyzer escapes = new EscapeAnalyzer(analyzer.getAnalysis());
+        escapes.visit(ast);
+        Ast.Expression.PlcList list = escapes.getLists().get(0);
+        Assertions.assertEquals(expected, escapes.getEscapes(list));
+        Assertions.assertEquals(expected.isEmpty() ? 1 : 0, escapes.getNonEscapingCount());
+    }
+
+    private static Stream<Arguments> testEscapes() {
+        return Stream.of(
+                Arguments.of("Indexed Only", "xs[0] = xs[1] + xs[2];", EnumSet.noneOf(EscapeAnalyzer.Escape.class)),
+                Arguments.of("Index Arithmetic", "LET i = 1; WHILE i < 3 DO xs[i] = xs[i - 1] * 2; i = i + 1; END", EnumSet.noneOf(EscapeAnalyzer.Escape.class)),
+                Arguments.of("Element Passed", "f(xs[0]);", EnumSet.noneOf(EscapeAnalyzer.Escape.class)),
+                Arguments.of("Stored", "LET ys = xs;", EnumSet.of(EscapeAnalyzer.Escape.STORED)),
+                Arguments.of("Argument", "print(xs);", EnumSet.of(EscapeAnalyzer.Escape.ARGUMENT)),
+                Arguments.of("Operand", "LET n = xs + 1;", EnumSet.of(EscapeAnalyzer.Escape.USED)),
+                Arguments.of("Reassigned", "xs = 5;", EnumSet.of(EscapeAnalyzer.Escape.REASSIGNED)),
+                Arguments.of("Several", "f(xs); LET ys = xs;", EnumSet.of(EscapeAnalyzer.Escape.ARGUMENT, EscapeAnalyzer.Escape.STORED))
+        );
+    }
+
+    @Test
+    void testFunctions() {
+        String input = "LIST a: Integer = [1]; LIST b: Integer = [2]; " +
+                "FUN get(): Integer DO RETURN a[0]; END " +
+                "FUN main(): Integer DO a[0] = b[0]; RETURN b; END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        EscapeAnalyzer escapes = new EscapeAnalyzer();
+        escapes.visit(ast);
+        Assertions.assertEquals(2, escapes.getLists().size());
+        Assertions.assertEquals(Set.of("get/0", "main/0"), escapes.getFunctions(escapes.getLists().get(0)));
+        Assertions.assertEquals(Set.of("main/0"), escapes.getFunctions(escapes.getLists().get(1)));
+        Assertions.assertFalse(escapes.escapes(escapes.getLists().get(0)));
+        Assertions.assertEquals(EnumSet.of(EscapeAnalyzer.Escape.RETURNED), escapes.getEscapes(escapes.getLists().get(1)));
+        Assertions.assertEquals(1, escapes.getNonEscapingCount());
+    }
+
+    @Test
+    void testReassigned() {
+        String input = "LIST xs: Integer = [1, 2, 3]; LIST ys: Integer = [7]; " +
+                "FUN main(): Integer DO xs = ys; RETURN xs[0]; END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        EscapeAnalyzer escapes = new EscapeAnalyzer();
+        escapes.visit(ast);
+        Assertions.assertEquals(EnumSet.of(EscapeAnalyzer.Escape.REASSIGNED), escapes.getEscapes(escapes.getLists().get(0)));
+        Assertions.assertEquals(EnumSet.of(EscapeAnalyzer.Escape.STORED), escapes.getEscapes(escapes.getLists().get(1)));
+        Assertions.assertEquals(0, escapes.getNonEscapingCount());
+    }
+
+}
@@ -0,0 +1,53 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+final class ExpressionInternerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSharing(String test, String left, String right, boolean shared) {
+        ExpressionInterner interner = new ExpressionInterner();
+        Ast.Expression l = interner.intern(parse(left));
+        Ast.Expression r = interner.intern(parse(right));
+        Assertions.assertEquals(shared, l == r);
+        Assertions.assertEquals(shared, l.equals(r));
+        Assertions.assertEquals(parse(left), l);
+        if (shared) {
+            Assertions.assertEquals(interner.hash(l), interner.hash(r));
+        }
+    }
+
+    private static Stream<Arguments> testSharing() {
+        return Stream.of(
+                Arguments.of("Literal", "1", "1", true),
+                Arguments.of("Different Literal Types", "'1'", "\"1\"", false),
+                Arguments.of("Access", "list[i + 1]", "list[i + 1]", true),
+                Arguments.of("Different Offset", "list[i + 1]", "list[i - 1]", false),
+                Arguments.of("Call", "f(x, (y * 2), g())", "f(x, (y * 2), g())", true),
+                Arguments.of("Operand Order", "a - b", "b - a", false)
+        );
+    }
+
+    @Test
+    void testNodeCount() {
+        ExpressionInterner interner = new ExpressionInterner();
+        // x * 60 * 60 repeated: x, 60, x * 60, x * 60 * 60
+        for (int i = 0; i < 100; i++) {
+            interner.intern(parse("x * 60 * 60"));
+        }
+        Assertions.assertEquals(4, interner.getNodeCount());
+        Assertions.assertEquals(500, interner.getRequestCount());
+    }
+
+    private static Ast.Expression parse(String input) {
+        return new Parser(new Lexer(input).lex()).parseExpression();
+    }
+
+}
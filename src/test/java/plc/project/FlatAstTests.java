@@ -0,0 +1,63 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+final class FlatAstTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testRoundTrip(String test, String input) {
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        FlatAst flat = FlatAst.encode(source);
+        Assertions.assertEquals(source, flat.decode());
+    }
+
+    private static Stream<Arguments> testRoundTrip() {
+        return Stream.of(
+                Arguments.of("Main",
+                        "FUN main(): Integer DO RETURN 0; END"
+                ),
+                Arguments.of("Globals",
+                        "VAR x: Integer = 1; VAL y: Decimal = 2.0; LIST l: String = [\"a\", \"b\"]; VAR z: Boolean; FUN main(): Integer DO RETURN x; END"
+                ),
+                Arguments.of("Statements",
+                        "FUN f(a: Integer, b: String): Integer DO\n" +
+                        "    LET c: Integer = a * (a + 1);\n" +
+                        "    LET d;\n" +
+                        "    IF c > 2 && TRUE DO print(b); ELSE c = c - 1; END\n" +
+                        "    WHILE c != 0 DO c = c - 1; END\n" +
+                        "    SWITCH c CASE 1: print('x'); DEFAULT print(NIL); END\n" +
+                        "    RETURN f(c, b);\n" +
+                        "END"
+                )
+        );
+    }
+
+    @Test
+    void testLayout() {
+        Ast.Source source = new Parser(new Lexer("VAR x: Integer = 1 + x; FUN main() DO print(x); print(x); END").lex()).parseSource();
+        FlatAst flat = FlatAst.encode(source);
+
+        int root = flat.getRoot();
+        Assertions.assertEquals(FlatAst.SOURCE, flat.getKind(root));
+        Assertions.assertEquals(1, flat.getA(root));
+        Assertions.assertEquals(2, flat.getChildCount(root));
+
+        int global = flat.getChild(root, 0);
+        Assertions.assertEquals(FlatAst.GLOBAL, flat.getKind(global));
+        Assertions.assertEquals("x", flat.getString(flat.getA(global)));
+        Assertions.assertEquals(FlatAst.BINARY, flat.getKind(flat.getChild(global, 0)));
+        // nodes are laid out in pre-order
+        Assertions.assertEquals(global + 1, flat.getChild(global, 0));
+
+        // "x", "print" and the rest are pooled once
+        Assertions.assertEquals(6, flat.getConstantCount());
+    }
+
+}
@@ -0,0 +1,99 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class FunctionInlinerTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "VAR count: Integer = 0;",
+            "LIST ys: Integer = [0];",
+            "FUN sq(n: Integer): Integer DO RETURN n * n; END",
+            "FUN add(a: Integer, b: Integer): Integer DO LET s = a + b; RETURN s; END",
+            "FUN bump() DO count = count + 1; END",
+            "FUN next(): Integer DO count = count + 1; RETURN count; END",
+            "FUN fact(n: Integer): Integer DO IF n < 2 DO RETURN 1; END RETURN n * fact(n - 1); END",
+            "FUN absolute(n: Integer): Integer DO IF n < 0 DO RETURN 0 - n; END RETURN n; END",
+            "FUN main(): Integer DO LET x = 3; %s END"
+    );
+
+    private static final String CHAIN = String.join("\n",
+            "FUN inc(n: Integer): Integer DO RETURN n + 1; END",
+            "FUN inc2(n: Integer): Integer DO LET m = inc(n); RETURN inc(m); END",
+            "FUN inc4(n: Integer): Integer DO LET m = inc2(n); RETURN inc2(m); END",
+            "FUN main(): Integer DO RETURN inc4(0); END"
+    );
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testInline(String test, String body, int inlined, Object expected) {
+        FunctionInliner inliner = PassFixture.rewrite(String.format(PROGRAM, body), FunctionInliner::new, expected);
+        Assertions.assertEquals(inlined, inliner.getInlinedCount());
+    }
+
+    private static Stream<Arguments> testInline() {
+        return Stream.of(
+                Arguments.of("Declaration", "LET y = sq(x); RETURN y;", 1, BigInteger.valueOf(9)),
+                Arguments.of("Assignment", "LET y = 0; y = add(x, 4); RETURN y;", 1, BigInteger.valueOf(7)),
+                Arguments.of("Return", "RETURN add(x, x);", 1, BigInteger.valueOf(6)),
+                Arguments.of("Statement", "bump(); bump(); RETURN count;", 2, BigInteger.TWO),
+                Arguments.of("Unused Result", "next(); RETURN count;", 1, BigInteger.ONE),
+                Arguments.of("Argument Order", "LET y = add(next(), next() * 10); RETURN y;", 1, BigInteger.valueOf(21)),
+                Arguments.of("Nested Call", "RETURN sq(sq(x));", 1, BigInteger.valueOf(81)),
+                Arguments.of("Recursive", "RETURN fact(x);", 0, BigInteger.valueOf(6)),
+                Arguments.of("Several Returns", "RETURN absolute(0 - x);", 0, BigInteger.valueOf(3)),
+                Arguments.of("In Loop", "LET s = 0; LET i = 0; WHILE i < x DO s = add(s, sq(i)); i = i + 1; END RETURN s;", 1, BigInteger.valueOf(5)),
+                Arguments.of("Caller Local", "LET s = 10; LET t = add(s, 1); RETURN s + t;", 1, BigInteger.valueOf(21)),
+                Arguments.of("Shadowed Global", "LET count = 5; RETURN next();", 0, BigInteger.ONE),
+                Arguments.of("Indexed Receiver", "ys[0] = sq(x); RETURN ys[0];", 0, BigInteger.valueOf(9))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testBudget(String test, int maxSize, int maxDepth, int inlined) {
+        Ast.Source original = PassFixture.parse(CHAIN);
+        new Analyzer(new Scope(null)).visit(original);
+        FunctionInliner inliner = new FunctionInliner(null, maxSize, maxDepth);
+        Ast.Source rewritten = (Ast.Source) inliner.visit(original);
+        Assertions.assertEquals(inlined, inliner.getInlinedCount());
+
+        new Analyzer(new Scope(null)).visit(rewritten);
+        Assertions.assertEquals(BigInteger.valueOf(4), new Interpreter(new Scope(null)).visit(rewritten).getValue());
+    }
+
+    private static Stream<Arguments> testBudget() {
+        return Stream.of(
+                Arguments.of("Depth 0", 100, 0, 0),
+                Arguments.of("Depth 1", 100, 1, 3),
+                Arguments.of("Depth 2", 100, 2, 4),
+                Arguments.of("Depth 3", 100, 3, 5),
+                Arguments.of("Size", 4, 3, 0)
+        );
+    }
+
+    @Test
+    void testRename() {
+        Ast.Source original = PassFixture.parse(String.format(PROGRAM, "LET y = add(x, 1); RETURN y;"));
+        new Analyzer(new Scope(null)).visit(original);
+        Ast.Source rewritten = (Ast.Source) new FunctionInliner().visit(original);
+        List<Ast.Statement> statements = rewritten.getFunctions().get(6).getStatements();
+        Assertions.assertEquals(List.of("x", "$inl0_a", "$inl0_b", "$inl0_s", "y"), List.of(
+                ((Ast.Statement.Declaration) statements.get(0)).getName(),
+                ((Ast.Statement.Declaration) statements.get(1)).getName(),
+                ((Ast.Statement.Declaration) statements.get(2)).getName(),
+                ((Ast.Statement.Declaration) statements.get(3)).getName(),
+                ((Ast.Statement.Declaration) statements.get(4)).getName()));
+        Ast.Statement.Declaration result = (Ast.Statement.Declaration) statements.get(4);
+        Assertions.assertEquals("Integer", result.getTypeName().get());
+        Assertions.assertEquals("$inl0_s", ((Ast.Expression.Access) result.getValue().get()).getName());
+    }
+
+}
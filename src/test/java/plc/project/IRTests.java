@@ -0,0 +1,152 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+final class IRTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testLower(String test, String body, int blocks, int phis) {
+        String input = "VAR g: Integer = 0; FUN f(x: Integer): Integer DO RETURN x; END " +
+                "FUN main(): Integer DO " + body + " END";
+        IR.Function function = lower(input).getFunction("main/0");
+        IRVerifier.verify(function);
+        Assertions.assertEquals(blocks, function.getBlocks().size(), print(function));
+        Assertions.assertEquals(phis, function.getBlocks().stream().mapToInt(block -> block.getPhis().size()).sum(), print(function));
+    }
+
+    private static Stream<Arguments> testLower() {
+        return Stream.of(
+                Arguments.of("Straight Line", "LET x = 1; x = x + 2; RETURN x;", 1, 0),
+                Arguments.of("If Merge", "LET x = 1; IF g > 0 DO x = 2; ELSE x = 3; END RETURN x;", 4, 1),
+                Arguments.of("If Unchanged", "LET x = 1; IF g > 0 DO g = 2; END RETURN x;", 3, 0),
+                Arguments.of("Loop", "LET i = 0; LET s = 0; WHILE i < 10 DO s = s + i; i = i + 1; END RETURN s;", 4, 2),
+                Arguments.of("Loop Invariant", "LET i = 0; LET k = 5; WHILE i < k DO i = i + 1; END RETURN k;", 4, 1),
+                Arguments.of("Nested Loops", "LET i = 0; LET n = 0; WHILE i < 3 DO LET j = 0; " +
+                        "WHILE j < i DO n = n + 1; j = j + 1; END i = i + 1; END RETURN n;", 7, 4),
+                Arguments.of("Switch", "LET x = 0; SWITCH g CASE 1: x = 1; CASE 2: x = 2; DEFAULT x = f(g); END RETURN x;", 6, 1),
+                Arguments.of("Short Circuit", "LET b = g > 0 && g < 10 || g == 20; RETURN 0;", 5, 2),
+                Arguments.of("Return In Branch", "IF g > 0 DO RETURN 1; END RETURN 2;", 3, 0),
+                Arguments.of("Dead Code", "RETURN 1; g = 2; WHILE TRUE DO g = g + 1; END", 1, 0),
+                Arguments.of("Globals", "g = f(g) + 1; IF g > 1 DO g = 0; END RETURN g;", 3, 0)
+        );
+    }
+
+    @Test
+    void testPrint() {
+        IR.Program program = lower("LIST xs: Integer = [1, 2]; " +
+                "FUN sum(n: Integer): Integer DO LET s = 0; LET i = 0; WHILE i < n DO s = s + xs[i]; i = i + 1; END RETURN s; END " +
+                "FUN main(): Integer DO RETURN sum(2); END");
+        StringWriter writer = new StringWriter();
+        new IRPrinter(new PrintWriter(writer)).print(program.getFunction("sum/1"));
+        Assertions.assertEquals(String.join("\n",
+                "function sum(%n: Integer): Integer {",
+                "b0:",
+                "    jump b1",
+                "b1: ; preds b0, b2",
+                "    %0: Integer = phi [0, b0], [%6, b2]",
+                "    %1: Integer = phi [0, b0], [%5, b2]",
+                "    %2: Boolean = binary < %0, %n",
+                "    branch %2, b2, b3",
+                "b2: ; preds b1",
+                "    %3: Integer = load_global @xs",
+                "    %4: Integer = load_element %3, %0",
+                "    %5: Integer = binary + %1, %4",
+                "    %6: Integer = binary + %0, 1",
+                "    jump b1",
+                "b3: ; preds b1",
+                "    return %1",
+                "}",
+                ""
+        ), writer.toString());
+    }
+
+    @Test
+    void testProgram() {
+        IR.Program program = lower("LIST xs: Integer = [1, 2, 3]; VAR total: Integer = 0; " +
+                "FUN pick(c: Character): Integer DO LET v = 0; SWITCH c CASE 'a': v = 1; DEFAULT v = 2; END RETURN v; END " +
+                "FUN main(): Integer DO xs[0] = pick('a'); total = total + xs[0]; print(total); RETURN total; END");
+        IRVerifier.verify(program);
+        Assertions.assertEquals("globals", program.getInitializer().getName());
+        Assertions.assertEquals(List.of("pick/1", "main/0"), program.getFunctions().stream().map(IR.Function::getKey).collect(Collectors.toList()));
+        IR.Instruction list = program.getInitializer().getEntry().getInstructions().get(0);
+        Assertions.assertEquals(IR.Instruction.Op.LIST, list.getOp());
+        Assertions.assertEquals(new IR.Constant(BigInteger.ONE, Environment.Type.INTEGER).getLiteral(), ((IR.Constant) list.getOperands().get(0)).getLiteral());
+        IR.Block join = program.getFunction("pick/1").getBlocks().get(3);
+        Assertions.assertEquals(1, join.getPhis().size());
+        Assertions.assertEquals(Environment.Type.INTEGER, join.getPhis().get(0).getType());
+    }
+
+    @Test
+    void testVerifyUseBeforeDefinition() {
+        IR.Function function = new IR.Function("f", List.of(), Environment.Type.INTEGER);
+        IR.Block block = new IR.Block(0);
+        function.getBlocks().add(block);
+        IR.Instruction later = new IR.Instruction(1, IR.Instruction.Op.LOAD_GLOBAL, Environment.Type.INTEGER, List.of());
+        later.setGlobal("g");
+        IR.Instruction sum = new IR.Instruction(0, IR.Instruction.Op.BINARY, Environment.Type.INTEGER, List.of(later, later));
+        sum.setOperator("+");
+        IR.Instruction ret = new IR.Instruction(2, IR.Instruction.Op.RETURN, Environment.Type.NIL, List.of(sum));
+        for (IR.Instruction instruction : List.of(sum, later)) {
+            instruction.setBlock(block);
+            block.getInstructions().add(instruction);
+        }
+        ret.setBlock(block);
+        block.setTerminator(ret);
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> IRVerifier.verify(function));
+        Assertions.assertTrue(exception.getMessage().contains("does not dominate"), exception.getMessage());
+    }
+
+    @Test
+    void testVerifyBranchDefinition() {
+        IR.Function function = lower("VAR g: Integer = 0; FUN main(): Integer DO LET x = 0; IF g > 0 DO x = g + 1; END RETURN x; END")
+                .getFunction("main/0");
+        IR.Block join = function.getBlocks().get(2);
+        IR.Instruction phi = join.getPhis().remove(0);
+        join.getTerminator().getOperands().set(0, phi.getOperands().get(0) instanceof IR.Instruction
+                ? phi.getOperands().get(0) : phi.getOperands().get(1));
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> IRVerifier.verify(function));
+        Assertions.assertTrue(exception.getMessage().contains("does not dominate"), exception.getMessage());
+    }
+
+    @Test
+    void testVerifyMissingTerminator() {
+        IR.Function function = lower("FUN main(): Integer DO RETURN 0; END").getFunction("main/0");
+        function.getEntry().setTerminator(null);
+        Assertions.assertThrows(RuntimeException.class, () -> IRVerifier.verify(function));
+    }
+
+    @Test
+    void testVerifyPhiOperands() {
+        IR.Function function = lower("VAR g: Integer = 0; FUN main(): Integer DO LET x = 0; IF g > 0 DO x = 1; END RETURN x; END")
+                .getFunction("main/0");
+        function.getBlocks().get(2).getPhis().get(0).getOperands().remove(0);
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> IRVerifier.verify(function));
+        Assertions.assertTrue(exception.getMessage().contains("operands"), exception.getMessage());
+    }
+
+    private static IR.Program lower(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Analyzer analyzer = new Analyzer(new Scope(null), false);
+        analyzer.visit(ast);
+        return new IRLowerer(analyzer.getAnalysis()).lower(ast);
+    }
+
+    private static String print(IR.Function function) {
+        StringWriter writer = new StringWriter();
+        new IRPrinter(new PrintWriter(writer)).print(function);
+        return writer.toString();
+    }
+
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Stream;
 public class LexerTests {
@@ -351,6 +352,33 @@ public class LexerTests {
                 () -> new Lexer("\"unterminated").lex());
         Assertions.assertEquals(13, exception.getIndex());
     }
+    @Test
+    void testOffHeap() {
+        String input = "VAR i = -1 : Integer;\nFUN foo() DO\n    print(\"bar\" + 'c');\nEND";
+        try (TokenBuffer tokens = new Lexer(input).lexOffHeap()) {
+            Assertions.assertEquals(new Lexer(input).lex(), tokens);
+        }
+    }
+    @Test
+    void testOffHeapClosed() {
+        TokenBuffer tokens = new Lexer("x").lexOffHeap();
+        tokens.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> tokens.get(0));
+        tokens.close();
+    }
+    @Test
+    void testOffHeapGrowth() {
+        String input = String.join(" ", Collections.nCopies(100, "x + 1"));
+        List<Token> expected = new Lexer(input).lex();
+        try (TokenBuffer tokens = new TokenBuffer(input, 1)) {
+            tokens.addAll(expected);
+            Assertions.assertEquals(expected, tokens);
+        }
+    }
+    @Test
+    void testOffHeapCapacity() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TokenBuffer("", Integer.MAX_VALUE));
+    }
     /**
      * Tests that lexing the input through {@link Lexer#lexToken()} produces a
      * single token with the expected type and literal matching the input.
@@ -0,0 +1,88 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class LoopInvariantHoisterTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "VAR count: Integer = 0;",
+            "LIST xs: Integer = [1, 2, 3];",
+            "FUN sq(n: Integer): Integer DO RETURN n * n; END",
+            "FUN bump() DO count = count + 1; END",
+            "FUN get(l: Integer, j: Integer): Integer DO RETURN l[j]; END",
+            "FUN main(): Integer DO LET n = 5; LET k = 3; LET s = 0; LET i = 0; %s END"
+    );
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testHoist(String test, String body, int hoisted, Object expected) {
+        LoopInvariantHoister hoister = PassFixture.rewrite(String.format(PROGRAM, body), LoopInvariantHoister::new, expected);
+        Assertions.assertEquals(hoisted, hoister.getHoistedCount());
+    }
+
+    private static Stream<Arguments> testHoist() {
+        return Stream.of(
+                Arguments.of("Invariant Product", "WHILE i < n DO s = s + n * n; i = i + 1; END RETURN s;", 1, BigInteger.valueOf(125)),
+                Arguments.of("Variant", "WHILE i < n DO s = s + i * i; i = i + 1; END RETURN s;", 0, BigInteger.valueOf(30)),
+                Arguments.of("Condition", "WHILE i < n * 2 DO i = i + 1; END RETURN i;", 1, BigInteger.TEN),
+                Arguments.of("Declared In Loop", "WHILE i < n DO LET m = i; s = s + m * 2; i = i + 1; END RETURN s;", 0, BigInteger.valueOf(20)),
+                Arguments.of("Failure In Body", "LET z = 0; WHILE i < 0 DO s = s + 10 / z; i = i + 1; END RETURN s;", 0, BigInteger.ZERO),
+                Arguments.of("Failure In Condition", "WHILE i < 10 / n DO i = i + 1; END RETURN i;", 1, BigInteger.TWO),
+                Arguments.of("Failure After Short Circuit", "WHILE i < 3 && 10 / n > 1 DO i = i + 1; END RETURN i;", 0, BigInteger.valueOf(3)),
+                Arguments.of("Global Written", "WHILE i < 3 DO count = count + k * 2; i = i + 1; END RETURN count;", 1, BigInteger.valueOf(18)),
+                Arguments.of("Written By Call", "WHILE i < 3 DO bump(); s = s + count * 2; i = i + 1; END RETURN s;", 0, BigInteger.valueOf(12)),
+                Arguments.of("Pure Call In Condition", "WHILE i < sq(n) DO i = i + 1; END RETURN i;", 1, BigInteger.valueOf(25)),
+                Arguments.of("Call Reads List", "WHILE i < get(xs, 1) DO i = i + 1; END RETURN i;", 1, BigInteger.TWO),
+                Arguments.of("List Store Under Call", "WHILE get(xs, 0) < 4 && i < 10 DO xs[0] = xs[0] + 1; i = i + 1; END RETURN i;",
+                        0, BigInteger.valueOf(3)),
+                Arguments.of("List Store", "WHILE xs[0] < 5 DO xs[0] = xs[0] + 1; END RETURN xs[0];", 0, BigInteger.valueOf(5)),
+                Arguments.of("Nested Loops", "WHILE i < 3 DO LET j = 0; WHILE j < 3 DO s = s + n * n + i * 2; j = j + 1; END i = i + 1; END RETURN s;",
+                        2, BigInteger.valueOf(243)),
+                Arguments.of("Uninitialized Zero Trip", "LET x: Integer; WHILE i < 0 DO s = x + 1; i = i + 1; END RETURN s;", 0, BigInteger.ZERO),
+                Arguments.of("Uninitialized In Condition", "LET x: Integer; x = 2; WHILE i < x * 2 DO i = i + 1; END RETURN i;", 1, BigInteger.valueOf(4)),
+                Arguments.of("Shared Temporary", "WHILE i < 3 DO s = s + n * n; s = s - n * n + 1; i = i + 1; END RETURN s;", 1, BigInteger.valueOf(3))
+        );
+    }
+
+    @Test
+    void testDeclaration() {
+        Ast.Source original = PassFixture.parse(String.format(PROGRAM, "WHILE i < n DO s = s + n * k; i = i + 1; END RETURN s;"));
+        new Analyzer(new Scope(null)).visit(original);
+        LoopInvariantHoister hoister = new LoopInvariantHoister();
+        Ast.Source rewritten = (Ast.Source) hoister.visit(original);
+        List<Ast.Statement> statements = rewritten.getFunctions().get(3).getStatements();
+        Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) statements.get(4);
+        Assertions.assertEquals("$licm0", declaration.getName());
+        Assertions.assertEquals("*", ((Ast.Expression.Binary) declaration.getValue().get()).getOperator());
+        Ast.Statement.While loop = (Ast.Statement.While) statements.get(5);
+        Ast.Statement.Assignment assignment = (Ast.Statement.Assignment) loop.getStatements().get(0);
+        Assertions.assertEquals("$licm0", ((Ast.Expression.Access) ((Ast.Expression.Binary) assignment.getValue()).getRight()).getName());
+        Assertions.assertEquals(1, hoister.getReplacedCount());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testParameter(String test, String argument, int hoisted, Object expected) {
+        String input = String.join("\n",
+                "FUN sum(a: Integer, b: Integer): Integer DO LET t = 0; LET j = 0; WHILE j < b DO t = a + b; j = j + 1; END RETURN t; END",
+                "FUN main(): Integer DO LET x: Integer; LET y = 2; RETURN sum(" + argument + "); END");
+        LoopInvariantHoister hoister = PassFixture.rewrite(input, LoopInvariantHoister::new, expected);
+        Assertions.assertEquals(hoisted, hoister.getHoistedCount());
+    }
+
+    private static Stream<Arguments> testParameter() {
+        return Stream.of(
+                Arguments.of("Initialized Argument", "y, 2", 1, BigInteger.valueOf(4)),
+                Arguments.of("Uninitialized Argument", "x, 0", 0, BigInteger.ZERO)
+        );
+    }
+
+}
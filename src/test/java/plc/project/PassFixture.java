@@ -0,0 +1,39 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+
+import java.util.function.Function;
+
+/**
+ * Shared checks for the tests of the {@link AstRewriter} passes.
+ */
+final class PassFixture {
+
+    private PassFixture() {}
+
+    static Ast.Source parse(String input) {
+        return new Parser(new Lexer(input).lex()).parseSource();
+    }
+
+    /**
+     * Analyses {@code input} without annotating it, runs an {@link
+     * EffectAnalyzer} and the pass created from the analysis, and checks
+     * that the rewritten source, once analysed again, evaluates to {@code
+     * expected} just as the original does. Returns the pass so the caller
+     * can check what it did.
+     */
+    static <T extends AstRewriter> T rewrite(String input, Function<Analysis, T> pass, Object expected) {
+        Ast.Source original = parse(input);
+        Analyzer analyzer = new Analyzer(new Scope(null), false);
+        analyzer.visit(original);
+        new EffectAnalyzer(analyzer.getAnalysis()).visit(original);
+        T rewriter = pass.apply(analyzer.getAnalysis());
+        Ast.Source rewritten = (Ast.Source) rewriter.visit(original);
+
+        new Analyzer(new Scope(null)).visit(rewritten);
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(rewritten).getValue());
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(parse(input)).getValue());
+        return rewriter;
+    }
+
+}
@@ -0,0 +1,83 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+final class RangeAnalyzerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testReturnRange(String test, String body, String range, RangeAnalyzer.Representation representation) {
+        Ast.Source ast = new Parser(new Lexer("VAR g: Integer = 1; FUN f(p: Integer): Integer DO " + body + " END FUN main(): Integer DO RETURN 0; END").lex()).parseSource();
+        Analyzer analyzer = new Analyzer(new Scope(null), false);
+        analyzer.visit(ast);
+        RangeAnalyzer ranges = new RangeAnalyzer(analyzer.getAnalysis());
+        ranges.visit(ast);
+        Ast.Expression value = firstReturn(ast.getFunctions().get(0).getStatements()).getValue();
+        Assertions.assertEquals(range, ranges.getRange(value).toString());
+        Assertions.assertEquals(representation, ranges.getRepresentation(value));
+    }
+
+    private static Stream<Arguments> testReturnRange() {
+        return Stream.of(
+                Arguments.of("Literal", "RETURN 42;", "[42, 42]", RangeAnalyzer.Representation.INT),
+                Arguments.of("Parameter", "RETURN p;", "[-inf, +inf]", RangeAnalyzer.Representation.BIG_INTEGER),
+                Arguments.of("Global", "RETURN g;", "[-inf, +inf]", RangeAnalyzer.Representation.BIG_INTEGER),
+                Arguments.of("Int Overflow", "LET x = 2147483647; RETURN x + 1;", "[2147483648, 2147483648]", RangeAnalyzer.Representation.LONG),
+                Arguments.of("Long Overflow", "LET x = 2147483647; RETURN x * x * x;", "[9903520300447984150353281023, 9903520300447984150353281023]", RangeAnalyzer.Representation.BIG_INTEGER),
+                Arguments.of("Power", "LET x = 3; RETURN x ^ 40;", "[12157665459056928801, 12157665459056928801]", RangeAnalyzer.Representation.BIG_INTEGER),
+                Arguments.of("Branches", "LET x = 1; IF p > 0 DO x = 10; ELSE x = -5; END RETURN x;", "[-5, 10]", RangeAnalyzer.Representation.INT),
+                Arguments.of("Refined Parameter", "IF p < 100 && p > 0 - 100 DO RETURN p * 1000; END RETURN 0;", "[-99000, 99000]", RangeAnalyzer.Representation.INT),
+                Arguments.of("Division", "LET x = 100; LET y = p; IF y > 0 DO RETURN x / y; END RETURN x / p;", "[0, 100]", RangeAnalyzer.Representation.INT),
+                Arguments.of("Unbounded Divisor", "LET x = 100; RETURN x / p;", "[-100, 100]", RangeAnalyzer.Representation.INT),
+                Arguments.of("Negative Divisor", "LET x = 100; IF p < 0 - 2 DO RETURN x / p; END RETURN 0;", "[-33, 0]", RangeAnalyzer.Representation.INT),
+                Arguments.of("Loop Counter", "LET i = 0; LET sum = 0; WHILE i < 10 DO sum = sum + i; i = i + 1; END RETURN i;", "[10, 10]", RangeAnalyzer.Representation.INT),
+                Arguments.of("Loop Accumulator", "LET i = 0; LET sum = 0; WHILE i < 10 DO sum = sum + i; i = i + 1; END RETURN sum;", "[0, +inf]", RangeAnalyzer.Representation.BIG_INTEGER)
+        );
+    }
+
+    /**
+     * Returns the first {@code RETURN} of a body, looking into the branches
+     * of an {@code IF}.
+     */
+    private static Ast.Statement.Return firstReturn(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.Return) {
+                return (Ast.Statement.Return) statement;
+            } else if (statement instanceof Ast.Statement.If) {
+                Ast.Statement.Return nested = firstReturn(((Ast.Statement.If) statement).getThenStatements());
+                if (nested != null) {
+                    return nested;
+                }
+            }
+        }
+        return null;
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testLoopBody(String test, String body, String range) {
+        Ast.Source ast = new Parser(new Lexer("FUN main(): Integer DO " + body + " RETURN 0; END").lex()).parseSource();
+        Analyzer analyzer = new Analyzer(new Scope(null));
+        analyzer.visit(ast);
+        RangeAnalyzer ranges = new RangeAnalyzer();
+        ranges.visit(ast);
+        Ast.Statement.While loop = (Ast.Statement.While) ast.getFunctions().get(0).getStatements().get(1);
+        Ast.Statement.Assignment increment = (Ast.Statement.Assignment) loop.getStatements().get(loop.getStatements().size() - 1);
+        Assertions.assertEquals(range, ranges.getRange(increment.getValue()).toString());
+    }
+
+    private static Stream<Arguments> testLoopBody() {
+        return Stream.of(
+                Arguments.of("Counting Up", "LET i = 0; WHILE i < 1000 DO i = i + 1; END", "[1, 1000]"),
+                Arguments.of("Counting Down", "LET i = 50; WHILE 0 < i DO i = i - 2; END", "[-1, 48]"),
+                Arguments.of("Nested", "LET i = 0; WHILE i < 10 DO LET j = 0; WHILE j < i DO j = j + 1; END i = i + 1; END", "[1, 10]")
+        );
+    }
+
+}
@@ -0,0 +1,74 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+final class ScopeTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testVariables(String test, int count) {
+        Scope parent = new Scope(null);
+        parent.defineVariable("outer", true, Environment.NIL);
+        Scope scope = new Scope(parent);
+        for (int i = 0; i < count; i++) {
+            scope.defineVariable("v" + i, true, Environment.create(i));
+        }
+        for (int i = 0; i < count; i++) {
+            Assertions.assertEquals(i, scope.getSlot("v" + i));
+            Assertions.assertEquals(i, scope.lookupVariable("v" + i).getValue().getValue());
+        }
+        Assertions.assertEquals(-1, scope.getSlot("outer"));
+        Assertions.assertEquals("outer", scope.lookupVariable("outer").getName());
+        RuntimeException undefined = Assertions.assertThrows(RuntimeException.class, () -> scope.lookupVariable("missing"));
+        Assertions.assertEquals("The variable missing is not defined in this scope.", undefined.getMessage());
+        if (count > 0) {
+            RuntimeException duplicate = Assertions.assertThrows(RuntimeException.class, () -> scope.defineVariable("v0", true, Environment.NIL));
+            Assertions.assertEquals("The variable v0 is already defined in this scope.", duplicate.getMessage());
+        }
+    }
+
+    private static Stream<Arguments> testVariables() {
+        return Stream.of(
+                Arguments.of("Empty", 0),
+                Arguments.of("Single", 1),
+                Arguments.of("Linear", 8),
+                Arguments.of("Hashed", 100)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testFunctions(String test, int count) {
+        Scope scope = new Scope(new Scope(null));
+        scope.getParent().defineFunction("outer", 1, args -> Environment.NIL);
+        for (int i = 0; i < count; i++) {
+            scope.defineFunction("f" + i, 0, args -> Environment.NIL);
+            scope.defineFunction("f" + i, 2, args -> Environment.NIL);
+        }
+        for (int i = 0; i < count; i++) {
+            Assertions.assertEquals(2, scope.lookupFunction("f" + i, 2).getArity());
+            Assertions.assertThrows(RuntimeException.class, () -> scope.lookupFunction("f0", 1));
+        }
+        Assertions.assertEquals("outer", scope.lookupFunction("outer", 1).getName());
+        RuntimeException undefined = Assertions.assertThrows(RuntimeException.class, () -> scope.lookupFunction("outer", 0));
+        Assertions.assertEquals("The function outer/0 is not defined in this scope.", undefined.getMessage());
+        if (count > 0) {
+            RuntimeException duplicate = Assertions.assertThrows(RuntimeException.class, () -> scope.defineFunction("f0", 2, args -> Environment.NIL));
+            Assertions.assertEquals("The function f0/2 is already defined in this scope.", duplicate.getMessage());
+        }
+    }
+
+    private static Stream<Arguments> testFunctions() {
+        return Stream.of(
+                Arguments.of("Empty", 0),
+                Arguments.of("Linear", 4),
+                Arguments.of("Hashed", 50)
+        );
+    }
+
+}
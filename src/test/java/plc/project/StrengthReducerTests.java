@@ -0,0 +1,69 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.stream.Stream;
+
+final class StrengthReducerTests {
+
+    private static final String PROGRAM = String.join("\n",
+            "LIST xs: Integer = [1, 2, 3];",
+            "FUN main(): Integer DO LET x = 3; LET d = 1.5; LET s = \"ab\"; %s END"
+    );
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testReduce(String test, String body, int reductions, Object expected) {
+        StrengthReducer reducer = PassFixture.rewrite(String.format(PROGRAM, body), StrengthReducer::new, expected);
+        Assertions.assertEquals(reductions, reducer.getReductionCount());
+    }
+
+    private static Stream<Arguments> testReduce() {
+        return Stream.of(
+                Arguments.of("Square", "RETURN x ^ 2;", 1, BigInteger.valueOf(9)),
+                Arguments.of("Cube", "RETURN 2 * (x ^ 3);", 1, BigInteger.valueOf(54)),
+                Arguments.of("First Power", "RETURN x ^ 1 + 1;", 1, BigInteger.valueOf(4)),
+                Arguments.of("Zero Power", "RETURN x ^ 0;", 1, BigInteger.ONE),
+                Arguments.of("Grouped Power", "RETURN 18 / (x ^ 2);", 1, BigInteger.TWO),
+                Arguments.of("Large Power", "RETURN x ^ 5;", 0, BigInteger.valueOf(243)),
+                Arguments.of("Indexed Base", "RETURN xs[1] ^ 2;", 0, BigInteger.valueOf(4)),
+                Arguments.of("Uninitialized First Power", "LET u: Integer; IF x == 0 DO RETURN u ^ 1; END RETURN x;", 0, BigInteger.valueOf(3)),
+                Arguments.of("Uninitialized Zero Power", "LET u: Integer; IF x == 0 DO RETURN u ^ 0; END RETURN x;", 0, BigInteger.valueOf(3)),
+                Arguments.of("Uninitialized Square", "LET u: Integer; IF x == 0 DO RETURN u ^ 2; END RETURN x;", 1, BigInteger.valueOf(3)),
+                Arguments.of("Double", "RETURN x + x;", 1, BigInteger.valueOf(6)),
+                Arguments.of("Triple", "RETURN x + x + x;", 2, BigInteger.valueOf(9)),
+                Arguments.of("Multiple Plus Variable", "RETURN x * 4 + x;", 1, BigInteger.valueOf(15)),
+                Arguments.of("Different Variables", "LET y = 2; RETURN x + y;", 0, BigInteger.valueOf(5)),
+                Arguments.of("Decimal", "IF d + d == 3.0 DO RETURN 1; END RETURN 0;", 0, BigInteger.ONE),
+                Arguments.of("String", "IF s + s == \"abab\" DO RETURN 1; END RETURN 0;", 0, BigInteger.ONE)
+        );
+    }
+
+    @Test
+    void testUninitialized() {
+        Ast.Source original = PassFixture.parse("FUN main(): Integer DO LET u: Integer; RETURN u ^ 0; END");
+        new Analyzer(new Scope(null)).visit(original);
+        Ast.Source rewritten = (Ast.Source) new StrengthReducer().visit(original);
+        new Analyzer(new Scope(null)).visit(rewritten);
+        Assertions.assertThrows(RuntimeException.class, () -> new Interpreter(new Scope(null)).visit(rewritten));
+    }
+
+    @Test
+    void testGenerate() {
+        Ast.Source original = PassFixture.parse("FUN main(): Integer DO LET x = 3; RETURN x ^ 2; END");
+        new Analyzer(new Scope(null)).visit(original);
+        Ast.Source rewritten = (Ast.Source) new StrengthReducer().visit(original);
+        new Analyzer(new Scope(null)).visit(rewritten);
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(rewritten);
+        Assertions.assertTrue(writer.toString().contains("return x * x;"), writer.toString());
+    }
+
+}
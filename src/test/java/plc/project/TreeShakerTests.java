@@ -0,0 +1,58 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class TreeShakerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testShake(String test, String input, List<String> removed, Object expected) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Analyzer analyzer = new Analyzer(new Scope(null), false);
+        analyzer.visit(ast);
+        TreeShaker shaker = new TreeShaker(analyzer.getAnalysis());
+        Ast.Source shaken = shaker.shake(ast);
+        Assertions.assertEquals(removed, List.copyOf(shaker.getRemoved()));
+        Assertions.assertEquals(ast.getGlobals().size() + ast.getFunctions().size() - removed.size(),
+                shaken.getGlobals().size() + shaken.getFunctions().size());
+
+        new Analyzer(new Scope(null)).visit(shaken);
+        Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(shaken).getValue());
+    }
+
+    private static Stream<Arguments> testShake() {
+        return Stream.of(
+                Arguments.of("Nothing Unused",
+                        "FUN main(): Integer DO RETURN 0; END",
+                        List.of(), BigInteger.ZERO),
+                Arguments.of("Unused Function",
+                        "FUN unused(): Integer DO RETURN 1; END FUN main(): Integer DO RETURN 0; END",
+                        List.of("unused/0"), BigInteger.ZERO),
+                Arguments.of("Call Chain",
+                        "FUN b(): Integer DO RETURN 2; END FUN a(): Integer DO RETURN b(); END FUN c(): Integer DO RETURN a(); END " +
+                        "FUN main(): Integer DO RETURN a(); END",
+                        List.of("c/0"), BigInteger.valueOf(2)),
+                Arguments.of("Overloads",
+                        "FUN f(): Integer DO RETURN 1; END FUN f(x: Integer): Integer DO RETURN x; END FUN main(): Integer DO RETURN f(3); END",
+                        List.of("f/0"), BigInteger.valueOf(3)),
+                Arguments.of("Globals",
+                        "VAR used: Integer = 1; VAR unused: Integer = 2; VAL derived: Integer = unused * 2; VAR uninitialized: Integer; " +
+                        "FUN main(): Integer DO RETURN used; END",
+                        List.of("unused", "derived", "uninitialized"), BigInteger.ONE),
+                Arguments.of("Initializer With Call",
+                        "VAR logged: Any = print(1); FUN main(): Integer DO RETURN 0; END",
+                        List.of(), BigInteger.ZERO),
+                Arguments.of("Division Kept",
+                        "VAR two: Integer = 2; VAR half: Integer = two / 2; FUN main(): Integer DO RETURN 0; END",
+                        List.of(), BigInteger.ZERO)
+        );
+    }
+
+}